@@ -1,42 +1,69 @@
 package com.github.f4irline.dreamcrusher;
 
-import android.content.BroadcastReceiver;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.ServiceConnection;
+import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.os.IBinder;
-import android.support.v4.content.LocalBroadcastManager;
+import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
+import android.view.SubMenu;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.TableLayout;
+import android.widget.TableRow;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.github.f4irline.dreamcrusher.engine.DrawMask;
+import com.github.f4irline.dreamcrusher.engine.GameFormat;
+import com.github.f4irline.dreamcrusher.engine.ProgressChannel;
+import com.github.f4irline.dreamcrusher.engine.ProgressListener;
+import com.github.f4irline.dreamcrusher.engine.SystemTicket;
 import com.github.f4irline.dreamcrusher.service.BinderComponent;
 import com.github.f4irline.dreamcrusher.service.LottoService;
 import com.github.f4irline.dreamcrusher.utils.Debug;
+import com.github.f4irline.dreamcrusher.utils.FrameExecutor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
 import java.util.TreeSet;
 
 public class MainActivity extends BaseActivity {
+    /**
+     * Amount of number buttons on a row of the grid.
+     */
+    private static final int COLUMNS = 6;
+
+    private final GameFormat[] gameFormats = GameFormat.presets();
+    private GameFormat gameFormat = GameFormat.DEFAULT;
     private TreeSet<Integer> selection = new TreeSet<>();
     private ArrayList<Button> buttons = new ArrayList<>();
+    // Indexed by the bit of the number in the masks.
+    private final Button[] numberButtons = new Button[Long.SIZE];
+    private final Drawable[] numberBackgrounds = new Drawable[Long.SIZE];
+    private final Drawable[] randomBackgrounds = new Drawable[Long.SIZE];
+    private long renderedMask;
     private boolean selectionFull = false;
 
     private TextView yearsText;
-    private int years;
+    private long years;
     private String yearsSpent;
 
+    private final ProgressComponent progressComponent = new ProgressComponent();
+    private FrameExecutor frameExecutor;
+
     private ConnectionComponent connectionToService;
+    private BinderComponent binder;
     private LottoService lottoService;
     private boolean isBound = false;
+    private double throttledSpeed;
 
     private Context appContext;
 
@@ -59,9 +86,7 @@ public class MainActivity extends BaseActivity {
 
         initButtonsArray();
         connectionToService = new ConnectionComponent();
-
-        // Register the activity to receive broadcasts locally, with the filter "lotto".
-        LocalBroadcastManager.getInstance(this).registerReceiver(new BroadcastComponent(), new IntentFilter("lotto"));
+        frameExecutor = new FrameExecutor();
     }
 
     @Override
@@ -92,22 +117,72 @@ public class MainActivity extends BaseActivity {
         super.onStop();
         if (isBound) {
             Debug.print(TAG, "onStop()", "Activity stopped.", 1, this);
+            binder.removeProgressListener(progressComponent);
             unbindService(connectionToService);
             isBound = false;
         }
     }
 
     /**
-     * Initializes the buttons array for easy deactivating and activating of buttons etc.
+     * Builds the grid of number buttons of the game format and initializes the
+     * buttons array for easy deactivating and activating of buttons etc.
+     *
+     * The main numbers fill rows of COLUMNS buttons, and the bonus numbers start
+     * on a row of their own. Every button is tagged and indexed with the bit of
+     * its number, and both backgrounds of every button are loaded once, so
+     * rendering a draw never parses texts or loads drawables. Every button gets
+     * its own drawable instances, since drawables keep state.
      */
     private void initButtonsArray() {
         TableLayout buttonsTable = (TableLayout) findViewById(R.id.tableOfNumbers);
-        ArrayList<View> tableButtons = buttonsTable.getTouchables();
-
-        for (View v : tableButtons) {
-            Button button = (Button) findViewById(v.getId());
+        buttonsTable.removeAllViews();
+        buttons.clear();
+        selection.clear();
+        selectionFull = false;
+        Arrays.fill(numberButtons, null);
+
+        LayoutInflater inflater = getLayoutInflater();
+        TableRow row = null;
+        int column = COLUMNS;
+        for (int bit = 1; bit <= gameFormat.getHighestNumber(); bit++) {
+            if (column == COLUMNS || bit == gameFormat.getMainNumbers() + 1) {
+                row = new TableRow(this);
+                buttonsTable.addView(row, new TableLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 0, 1f));
+                column = 0;
+            }
+            Button button = (Button) inflater.inflate(R.layout.number_button, row, false);
+            button.setText(String.valueOf(gameFormat.getNumber(bit)));
+            button.setTag(bit);
+            row.addView(button);
+            column++;
             buttons.add(button);
+
+            numberButtons[bit] = button;
+            numberBackgrounds[bit] = getResources().getDrawable(R.drawable.number_button);
+            randomBackgrounds[bit] = getResources().getDrawable(R.drawable.random_number_button);
+            button.setBackground(numberBackgrounds[bit]);
         }
+        renderedMask = 0L;
+    }
+
+    /**
+     * Switches to another game format and rebuilds the grid for it. The
+     * format can't be changed while the lotto is running.
+     *
+     * @param format the game format
+     * @return true if the format was changed
+     */
+    private boolean selectGameFormat(GameFormat format) {
+        if (lottoService.getServiceRunning()) {
+            Toast.makeText(appContext, "Stop the iteration first", Toast.LENGTH_SHORT).show();
+            return false;
+        }
+        lottoService.setGameFormat(format);
+        if (format != gameFormat) {
+            gameFormat = format;
+            initButtonsArray();
+        }
+        return true;
     }
 
     /**
@@ -115,19 +190,19 @@ public class MainActivity extends BaseActivity {
      *
      * If the button was not activated, it activates it and
      * adds it to the TreeSet. If it was activated, it deactivates
-     * it and removes it from the TreeSet.
+     * it and removes it from the TreeSet. The TreeSet holds the bits of the
+     * numbers, so bonus number j is the main numbers plus j.
      *
      * @param v the button which launched the event.
      */
     public void chooseNumber(View v) {
-        Button b = (Button) findViewById(v.getId());
+        Button b = (Button) v;
+        int number = (Integer) b.getTag();
 
         if (b.isActivated()) {
-            int number = Integer.parseInt(b.getText().toString());
             selection.remove(number);
             b.setActivated(false);
         } else {
-            int number = Integer.parseInt(b.getText().toString());
             selection.add(number);
             b.setActivated(true);
         }
@@ -136,11 +211,15 @@ public class MainActivity extends BaseActivity {
     }
 
     /**
-     * Checks if the selection size is 7 and if it is, it disables the buttons.
+     * Checks if the selection is full and if it is, it disables the buttons.
      * If it's not (a button was deactivated), it enables the buttons again.
+     * In the default format up to MAX_SYSTEM_NUMBERS numbers can be chosen, a
+     * selection of more than 7 numbers is a system entry. Other formats only
+     * take the numbers of one row.
      */
     private void checkSelectionSize() {
-        if (selection.size() > 6) {
+        int maxSelection = gameFormat == GameFormat.DEFAULT ? SystemTicket.MAX_SYSTEM_NUMBERS : gameFormat.getPicks();
+        if (selection.size() >= maxSelection) {
             toggleButtons(false);
             selectionFull = true;
         } else if (selectionFull) {
@@ -153,8 +232,7 @@ public class MainActivity extends BaseActivity {
      * Iterates through the buttons ArrayList and either enables or disables
      * all the buttons.
      *
-     * @param enable true if less than 7 buttons are activated, false if 7 buttons are
-     *               activated.
+     * @param enable true if the selection isn't full, false if it is.
      */
     private void toggleButtons(boolean enable) {
         for (Button b : buttons) {
@@ -175,8 +253,19 @@ public class MainActivity extends BaseActivity {
      */
     public void startLottoHandler(View v) {
         if (!lottoService.getServiceRunning()) {
+            if (gameFormat == GameFormat.DEFAULT && selection.size() < DrawMask.NUMBERS_DRAWN) {
+                Toast.makeText(appContext, "Choose at least " + DrawMask.NUMBERS_DRAWN + " numbers",
+                    Toast.LENGTH_SHORT).show();
+                return;
+            }
+            if (gameFormat != GameFormat.DEFAULT && !gameFormat.isValidTicket(gameFormat.toMask(selection))) {
+                Toast.makeText(appContext, "Choose " + gameFormat.getMainPicks() + " numbers"
+                    + (gameFormat.getBonusPicks() > 0 ? " and " + gameFormat.getBonusPicks() + " bonus numbers" : ""),
+                    Toast.LENGTH_SHORT).show();
+                return;
+            }
             setStopButton();
-            lottoService.startLotto(selection, buttons);
+            lottoService.startLotto(selection);
         } else {
             setStartButton();
             lottoService.stopLotto();
@@ -204,19 +293,50 @@ public class MainActivity extends BaseActivity {
     /**
      * Handles the styling of the random generated 7 numbers.
      *
-     * @param randomNumbers the random numbers.
+     * Only the buttons whose state changed since the previously rendered draw
+     * are touched: the numbers which left the draw get their normal style back
+     * and the new ones get the random style, so at most 14 buttons per frame.
+     *
+     * @param randomMask the random numbers as a bitmask.
      */
-    private void styleRandomButtons(ArrayList<Integer> randomNumbers) {
-        // Loop through the arraylist which holds the grid of buttons
-        for (Button b : buttons) {
-            // Get number from every button
-            int number = Integer.parseInt(b.getText().toString());
-            // If the random numbers arraylist contains the number, set the button style to be
-            // the random style
-            if (randomNumbers.contains(number)) {
-                b.setBackground(getResources().getDrawable(R.drawable.random_number_button));
+    private void styleRandomButtons(long randomMask) {
+        long changed = renderedMask ^ randomMask;
+        while (changed != 0) {
+            int number = Long.numberOfTrailingZeros(changed);
+            changed &= changed - 1;
+
+            if (DrawMask.contains(randomMask, number)) {
+                numberButtons[number].setBackground(randomBackgrounds[number]);
+            } else {
+                numberButtons[number].setBackground(numberBackgrounds[number]);
             }
         }
+        renderedMask = randomMask;
+    }
+
+    /**
+     * Renders the latest progress: the random numbers and the years spent.
+     * Weeks run in between two frames only show up in the counters.
+     *
+     * @param latest the latest progress of the lotto.
+     */
+    private void renderProgress(ProgressChannel.Snapshot latest) {
+        styleRandomButtons(latest.getDrawMask());
+
+        // Count years that we've spent trying to win (1 iteration = 1 week).
+        years = latest.getWeeks() / 52;
+        yearsSpent = years+" years spent.";
+        if (latest.getWeeksPerSecond() > 0) {
+            yearsSpent += "\n" + Math.round(latest.getWeeksPerSecond()) + " weeks/s, best "
+                + latest.getBestMatch();
+        }
+        if (latest.getDistinctDraws() > 0) {
+            yearsSpent += String.format(Locale.US, "\n%.4f%% of rows seen", latest.getCoverage() * 100);
+            if (latest.getFirstRepeatWeek() >= 0) {
+                yearsSpent += ", first repeat in week " + latest.getFirstRepeatWeek();
+            }
+        }
+        yearsText.setText(yearsSpent);
     }
 
     /**
@@ -226,6 +346,8 @@ public class MainActivity extends BaseActivity {
      */
     @Override
     public boolean onPrepareOptionsMenu(Menu menu) {
+        SubMenu games = menu.findItem(R.id.games).getSubMenu();
+        games.findItem(Menu.FIRST + Arrays.asList(gameFormats).indexOf(gameFormat)).setChecked(true);
         return true;
     }
 
@@ -238,6 +360,12 @@ public class MainActivity extends BaseActivity {
     public boolean onCreateOptionsMenu(Menu menu) {
         MenuInflater inflater = getMenuInflater();
         inflater.inflate(R.menu.mainmenu, menu);
+
+        SubMenu games = menu.findItem(R.id.games).getSubMenu();
+        for (int i = 0; i < gameFormats.length; i++) {
+            games.add(R.id.game_formats, Menu.FIRST + i, i, gameFormats[i].getName());
+        }
+        games.setGroupCheckable(R.id.game_formats, true, true);
         return true;
     }
 
@@ -249,12 +377,43 @@ public class MainActivity extends BaseActivity {
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         super.onOptionsItemSelected(item);
+        if (item.getGroupId() == R.id.game_formats) {
+            if (selectGameFormat(gameFormats[item.getItemId() - Menu.FIRST])) {
+                item.setChecked(true);
+            }
+            return true;
+        }
         switch (item.getItemId()) {
             case (R.id.plus):
-                lottoService.increaseSpeed();
+                changeSpeed(2);
                 return true;
             case (R.id.minus):
-                lottoService.decreaseSpeed();
+                changeSpeed(0.5);
+                return true;
+            case (R.id.turbo):
+                item.setChecked(!item.isChecked());
+                if (item.isChecked()) {
+                    throttledSpeed = lottoService.getWeeksPerSecond();
+                    lottoService.setWeeksPerSecond(LottoService.UNTHROTTLED);
+                } else {
+                    lottoService.setWeeksPerSecond(throttledSpeed);
+                }
+                return true;
+            case (R.id.parallel):
+                item.setChecked(!item.isChecked());
+                lottoService.setParallel(item.isChecked());
+                return true;
+            case (R.id.pipeline):
+                item.setChecked(!item.isChecked());
+                lottoService.setPipelined(item.isChecked());
+                return true;
+            case (R.id.jump):
+                item.setChecked(!item.isChecked());
+                lottoService.setJumpToWin(item.isChecked());
+                return true;
+            case (R.id.history):
+                item.setChecked(!item.isChecked());
+                lottoService.setRecordHistory(item.isChecked());
                 return true;
             case (R.id.five):
                 lottoService.setDifficulty(5);
@@ -272,6 +431,19 @@ public class MainActivity extends BaseActivity {
         return false;
     }
 
+    /**
+     * Multiplies the target speed of the lotto. Has no effect while the lotto
+     * runs unthrottled, that's toggled with the turbo menu item.
+     *
+     * @param factor the factor to multiply the weeks per second with.
+     */
+    private void changeSpeed(double factor) {
+        double current = lottoService.getWeeksPerSecond();
+        if (current != LottoService.UNTHROTTLED) {
+            lottoService.setWeeksPerSecond(current * factor);
+        }
+    }
+
     /**
      * Helper component to bind the service.
      */
@@ -280,9 +452,19 @@ public class MainActivity extends BaseActivity {
         public void onServiceConnected(ComponentName name, IBinder service) {
             Debug.print(TAG, "onServiceConnected()", "Service connected", 1, getParent());
             // We've bound to BinderComponent, cast the IBinder and get the BinderComponent instance.
-            BinderComponent binder = (BinderComponent) service;
+            binder = (BinderComponent) service;
             lottoService = binder.getService();
             isBound = true;
+            if (lottoService.getGameFormat() != gameFormat) {
+                gameFormat = lottoService.getGameFormat();
+                initButtonsArray();
+            }
+            // The service may have resumed a run after the process was killed.
+            if (lottoService.getServiceRunning()) {
+                setStopButton();
+            }
+            // Render the progress at most once per display frame.
+            binder.addProgressListener(progressComponent, frameExecutor);
         }
 
         @Override
@@ -293,39 +475,22 @@ public class MainActivity extends BaseActivity {
     }
 
     /**
-     * Handles receiving broadcasts from the LottoService.
+     * Receives the progress of the service at the start of a display frame, so
+     * the UI is never updated more often than it can be drawn however fast the
+     * lotto runs.
      */
-    class BroadcastComponent extends BroadcastReceiver {
+    class ProgressComponent implements ProgressListener {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            // Get extras from the broadcast
-            Bundle extras = intent.getExtras();
-
-            // Check that the extras are not null
-            if (extras != null) {
-                // Check if we've won, if we have, reset start button
-                if (extras.getBoolean("victory")) {
-                    setStartButton();
-                    Toast.makeText(appContext, "Found " + extras.getInt("amount") + " of the same numbers!", Toast.LENGTH_LONG).show();
-                }
-
-                // Check if we have randomNumbers key, if we do, send them to styleRandomButtons() method
-                // which handles toggling the randomNumbers style.
-                if (extras.containsKey("randomNumbers")) {
-                    ArrayList<Integer> randomNumbers = extras.getIntegerArrayList("randomNumbers");
-                    styleRandomButtons(randomNumbers);
-                }
+        public void onProgress(ProgressChannel.Snapshot progress) {
+            renderProgress(progress);
+            binder.recordRenderLatency(System.nanoTime() - progress.getPublishNanos());
+        }
 
-                // Count years that we've spent trying to win (1 iteration = 1 week)
-                if (extras.containsKey("weeks")) {
-                    int weeks = extras.getInt("weeks");
-                    if (weeks % 52 == 0) {
-                        years++;
-                        yearsSpent = years+" years spent.";
-                    }
-                    yearsText.setText(yearsSpent);
-                }
-            }
+        @Override
+        public void onVictory(int requiredMatches, long winningRows) {
+            setStartButton();
+            Toast.makeText(appContext, "Found " + requiredMatches + " of the same numbers"
+                + (winningRows > 1 ? " on " + winningRows + " rows!" : "!"), Toast.LENGTH_LONG).show();
         }
     }
 }
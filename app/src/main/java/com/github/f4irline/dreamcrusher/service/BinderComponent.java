@@ -2,6 +2,12 @@ package com.github.f4irline.dreamcrusher.service;
 
 import android.os.Binder;
 
+import com.github.f4irline.dreamcrusher.engine.LottoStatistics;
+import com.github.f4irline.dreamcrusher.engine.ProgressListener;
+import com.github.f4irline.dreamcrusher.engine.SimulationMetrics;
+
+import java.util.concurrent.Executor;
+
 /**
  * A base class for the remotable object.
  */
@@ -23,4 +29,52 @@ public class BinderComponent extends Binder {
         return this.service;
     }
 
+    /**
+     * Returns a snapshot of the statistics of the current run.
+     *
+     * @return the statistics, or null if nothing has run yet.
+     */
+    public LottoStatistics getStatistics() {
+        return this.service.getStatistics();
+    }
+
+    /**
+     * Returns a snapshot of the metrics of the simulation.
+     *
+     * @return the speed, the latencies and the allocations per week
+     */
+    public SimulationMetrics getMetrics() {
+        return this.service.getMetrics();
+    }
+
+    /**
+     * Records the time from publishing a progress to rendering it.
+     * Call from the main thread only.
+     *
+     * @param nanos the publish to render latency
+     */
+    public void recordRenderLatency(long nanos) {
+        this.service.recordRenderLatency(nanos);
+    }
+
+    /**
+     * Starts delivering the progress and the victory of the runs to the listener.
+     * The listener gets the latest progress right away, if there is any.
+     *
+     * @param listener the listener
+     * @param executor the executor which calls the listener, one call at a time
+     */
+    public void addProgressListener(ProgressListener listener, Executor executor) {
+        this.service.getProgressChannel().addListener(listener, executor);
+    }
+
+    /**
+     * Stops delivering anything to the listener.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeProgressListener(ProgressListener listener) {
+        this.service.getProgressChannel().removeListener(listener);
+    }
+
 }
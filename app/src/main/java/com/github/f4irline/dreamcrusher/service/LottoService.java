@@ -10,29 +10,126 @@ import android.content.Intent;
 import android.os.Build;
 import android.os.IBinder;
 import android.support.v4.app.NotificationCompat;
-import android.support.v4.content.LocalBroadcastManager;
-import android.widget.Button;
 
 import com.github.f4irline.dreamcrusher.LottoLogic;
 import com.github.f4irline.dreamcrusher.MainActivity;
 import com.github.f4irline.dreamcrusher.R;
+import com.github.f4irline.dreamcrusher.engine.BlockKernel;
+import com.github.f4irline.dreamcrusher.engine.Checkpoint;
+import com.github.f4irline.dreamcrusher.engine.CheckpointWriter;
+import com.github.f4irline.dreamcrusher.engine.CombinationBitmap;
+import com.github.f4irline.dreamcrusher.engine.DrawHistoryWriter;
+import com.github.f4irline.dreamcrusher.engine.DrawMask;
+import com.github.f4irline.dreamcrusher.engine.GameFormat;
+import com.github.f4irline.dreamcrusher.engine.LottoStatistics;
+import com.github.f4irline.dreamcrusher.engine.ParallelSimulation;
+import com.github.f4irline.dreamcrusher.engine.ProgressChannel;
+import com.github.f4irline.dreamcrusher.engine.RandomSource;
+import com.github.f4irline.dreamcrusher.engine.RandomSourceType;
+import com.github.f4irline.dreamcrusher.engine.SimulationMetrics;
+import com.github.f4irline.dreamcrusher.engine.SystemTicket;
+import com.github.f4irline.dreamcrusher.engine.TicketBook;
+import com.github.f4irline.dreamcrusher.engine.WaitingTime;
+import com.github.f4irline.dreamcrusher.engine.WeekPipeline;
+import com.github.f4irline.dreamcrusher.utils.AllocationCounter;
 import com.github.f4irline.dreamcrusher.utils.Debug;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
 import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
-public class LottoService extends Service implements Runnable {
+public class LottoService extends Service {
     final String TAG = this.getClass().getName();
 
+    /**
+     * The target speed which iterates the weeks as fast as possible.
+     */
+    public static final double UNTHROTTLED = Double.POSITIVE_INFINITY;
+
+    /**
+     * The slowest allowed target speed, in weeks per second.
+     */
+    public static final double MIN_WEEKS_PER_SECOND = 1;
+
+    /**
+     * The period of the lotto ticks, in milliseconds.
+     */
+    private static final long TICK_PERIOD = 10;
+
+    /**
+     * How often the speed and the statistics are refreshed, in milliseconds.
+     */
+    private static final long TURBO_PUBLISH_INTERVAL = 250;
+
+    /**
+     * The unthrottled loop reads the clock and publishes its progress only once
+     * per this many weeks (must be 2^n - 1).
+     */
+    private static final long TURBO_CLOCK_MASK = 4095;
+
+    /**
+     * How many weeks of a single ticket the unthrottled loop runs as one block.
+     */
+    private static final int BLOCK_WEEKS = (int) TURBO_CLOCK_MASK + 1;
+
+    /**
+     * How often a run saves a checkpoint, in milliseconds.
+     */
+    private static final long CHECKPOINT_INTERVAL = 5000;
+
+    /**
+     * The checkpoint file, in the files directory of the app.
+     */
+    private static final String CHECKPOINT_FILE = "lotto.checkpoint";
+
+    /**
+     * The draw history file, in the files directory of the app.
+     */
+    private static final String HISTORY_FILE = "lotto.history";
+
+    /**
+     * The shortest time between two logged ticks of a run, in milliseconds.
+     */
+    private static final long TICK_LOG_INTERVAL = 1000;
+
     private IBinder binder;
-    private boolean calculatingLotto;
+    private volatile boolean calculatingLotto;
+    private volatile double weeksPerSecond;
+    private volatile boolean parallel;
+    private volatile boolean pipelined;
+    private volatile boolean jumpToWin;
+    private volatile boolean recordHistory;
+
+    private volatile GameFormat gameFormat = GameFormat.DEFAULT;
+    private RandomSourceType randomSourceType = RandomSourceType.SPLITMIX;
+    private boolean fixedSeed;
+    private long seed;
 
-    private TreeSet<Integer> selection;
-    private ArrayList<Button> buttons;
-    private Thread lottoThread;
+    private long selectionMask;
+    private volatile SystemTicket systemTicket;
+    private TicketBook ticketBook;
+    private volatile LottoStatistics latestStatistics;
+    private final ProgressChannel progress = new ProgressChannel();
+    private final SimulationMetrics metrics = new SimulationMetrics(new AllocationCounter());
 
-    private int THREAD_SPEED;
-    private int WEEKS;
+    private ScheduledExecutorService lottoExecutor;
+    private volatile Future<?> lottoTask;
+    private volatile LottoRun currentRun;
+    private volatile WeekPipeline latestPipeline;
+    private CheckpointWriter checkpointWriter;
+    // Only touched on the lotto thread.
+    private CombinationBitmap combinations;
+
+    // Written on the lotto thread once a run is scheduled, set to its first week before it starts.
+    // Volatile so the main thread can read it in dump() and onStartCommand() without tearing.
+    private volatile long WEEKS;
     private int REQUIRED_AMOUNT;
 
     /**
@@ -44,147 +141,977 @@ public class LottoService extends Service implements Runnable {
     @Override
     public IBinder onBind(Intent intent) {
         Debug.print(TAG, "onBind()", "Service bound.", 1, this);
-        calculatingLotto = false;
-        THREAD_SPEED = 550;
-        REQUIRED_AMOUNT = 7;
-        WEEKS = 0;
+        // A run resumed from a checkpoint keeps its settings.
+        if (!calculatingLotto) {
+            weeksPerSecond = 1000.0 / 550;
+            REQUIRED_AMOUNT = gameFormat.getPicks();
+        }
 
         // Returns the IBinder, which wraps LottoService inside it.
         return binder;
     }
 
     /**
-     * Creates the binder component.
+     * Creates the binder component and the single thread which runs the lotto,
+     * then resumes the run which was going on when the process was killed, if any.
      */
     @Override
     public void onCreate () {
+        // The system may restart the service without the activity.
+        Debug.loadDebug(this);
         Debug.print(TAG, "onCreate()", "Service created.", 1, this);
         binder = new BinderComponent(this);
+        lottoExecutor = Executors.newSingleThreadScheduledExecutor();
+        checkpointWriter = new CheckpointWriter(new File(getFilesDir(), CHECKPOINT_FILE));
+        combinations = new CombinationBitmap();
+        resumeFromCheckpoint();
     }
 
     @Override
     public void onDestroy() {
         Debug.print(TAG, "onDestroy()", "Destroyed Service", 1, this);
-        calculatingLotto = false;
+        finishRun(currentRun, true);
+        // The stopped run only closes its history before the thread ends.
+        lottoExecutor.shutdown();
+        checkpointWriter.shutdown();
     }
 
+    /**
+     * Called when started, and with a null intent when the system restarts the
+     * service after killing it. The run was already resumed by onCreate() then.
+     */
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
-        Debug.print(TAG, "onStartCommand()", "Service started.", 1, this);
+        Debug.print(TAG, "onStartCommand()", intent == null && calculatingLotto
+            ? "Service restarted, resumed at week " + WEEKS : "Service started.", 1, this);
         return START_STICKY;
     }
 
+    /**
+     * Continues the run saved in the latest checkpoint, exactly where it was:
+     * the same random numbers follow, and the weeks and statistics go on from
+     * the saved ones. Only runs which were still going on leave a checkpoint.
+     */
+    private void resumeFromCheckpoint() {
+        Checkpoint checkpoint = Checkpoint.read(checkpointWriter.getFile());
+        if (checkpoint == null) {
+            return;
+        }
+        // Only runs of the default format are checkpointed.
+        gameFormat = GameFormat.DEFAULT;
+        randomSourceType = checkpoint.getRandomSourceType();
+        seed = checkpoint.getSeed();
+        selectionMask = checkpoint.getSelectionMask();
+        systemTicket = systemTicketOf(selectionMask);
+        REQUIRED_AMOUNT = checkpoint.getRequiredMatches();
+        WEEKS = checkpoint.getWeeks();
+        weeksPerSecond = checkpoint.getWeeksPerSecond();
+        ticketBook = null;
+        Debug.print(TAG, "resumeFromCheckpoint()", "Resuming at week " + WEEKS, 1, this);
+        startRun(new LottoLogic(checkpoint.getRandomSource()), checkpoint.getStatistics(), checkpoint,
+            checkpoint.getWeeks());
+    }
+
     /**
      * Starts calculating the lotto. Called when user clicks "I FEEL LUCKY" -button.
+     * A selection of more than 7 numbers is a system entry, which plays every
+     * 7 number row of it, and wins when its best row does. Bonus number j of
+     * the game format is given as the main numbers plus j.
+     *
      * @param userSelection the user's number selection in a TreeSet
-     * @param allButtons all the buttons in the grid.
      */
-    public void startLotto(TreeSet<Integer> userSelection, ArrayList<Button> allButtons) {
-        selection = userSelection;
-        buttons = allButtons;
-
-        // If we're not currently calculating the lotto, start a new thread.
-        if (!calculatingLotto) {
-            lottoThread = new Thread(this);
-            Debug.print(TAG, "startLotto", "Amount of threads running: "+Thread.activeCount(), 1, this);
-            lottoThread.start();
-            calculatingLotto = true;
+    public void startLotto(TreeSet<Integer> userSelection) {
+        if (calculatingLotto) {
+            return;
         }
+        selectionMask = gameFormat.toMask(userSelection);
+        systemTicket = systemTicketOf(selectionMask);
+        ticketBook = null;
+        startRun();
     }
 
     /**
-     * Called when user clicks the stop iteration button to stop the lotto iteration.
+     * Starts calculating the lotto for a whole syndicate of tickets. Every draw is
+     * matched against all the tickets, and the run goes on until every ticket has
+     * had REQUIRED_AMOUNT of the same numbers at least once.
+     *
+     * @param tickets the tickets, each with its own numbers
+     * @throws IllegalArgumentException if there are no tickets
      */
-    public void stopLotto() {
+    public void startSyndicate(List<TreeSet<Integer>> tickets) {
+        if (tickets.isEmpty()) {
+            // A book without tickets has won them all before the first week.
+            throw new IllegalArgumentException("A syndicate needs at least one ticket");
+        }
         if (calculatingLotto) {
-            calculatingLotto = false;
+            return;
+        }
+        long[] ticketMasks = new long[tickets.size()];
+        for (int i = 0; i < ticketMasks.length; i++) {
+            ticketMasks[i] = gameFormat.toMask(tickets.get(i));
+        }
+        selectionMask = ticketMasks[0];
+        systemTicket = null;
+        ticketBook = new TicketBook(ticketMasks, REQUIRED_AMOUNT);
+        startRun();
+    }
+
+    /**
+     * Returns the system entry of the latest single ticket run. Its rows in
+     * every prize tier follow from the match histogram of the statistics with
+     * {@link SystemTicket#getRowHistogram(long[])}.
+     *
+     * @return the system entry, or null if the selection had only 7 numbers
+     */
+    public SystemTicket getSystemTicket() {
+        return systemTicket;
+    }
+
+    private SystemTicket systemTicketOf(long selectionMask) {
+        return gameFormat == GameFormat.DEFAULT && DrawMask.size(selectionMask) > DrawMask.NUMBERS_DRAWN
+            ? new SystemTicket(selectionMask) : null;
+    }
+
+    /**
+     * Returns the tickets of the latest syndicate run with their best results and
+     * the weeks they first won.
+     *
+     * @return the ticket book, or null if the latest run had a single ticket
+     */
+    public TicketBook getTicketBook() {
+        return ticketBook;
+    }
+
+    /**
+     * Starts a new run with a new seed, unless the seed is fixed.
+     */
+    private void startRun() {
+        if (!fixedSeed) {
+            seed = System.nanoTime();
+        }
+        LottoLogic lottoLogic = new LottoLogic(randomSourceType.create(seed), gameFormat);
+        LottoStatistics statistics = new LottoStatistics(REQUIRED_AMOUNT, gameFormat);
+        // Syndicate runs aren't checkpointed, the ticket book isn't part of the checkpoint,
+        // and neither are other formats than the default one.
+        Checkpoint checkpoint = ticketBook == null && gameFormat == GameFormat.DEFAULT
+            ? new Checkpoint(randomSourceType, seed, lottoLogic.getRandomSource(), statistics, selectionMask)
+            : null;
+        startRun(lottoLogic, statistics, checkpoint, 0);
+    }
+
+    /**
+     * Schedules a run on the lotto executor. The executor has exactly one
+     * thread, so a run which is still winding down after a quick stop/start
+     * finishes before the new one begins, and two runs never overlap.
+     *
+     * @param lottoLogic the engine of the run
+     * @param statistics the statistics of the run
+     * @param checkpoint the checkpoint of the run, or null to not save any
+     * @param firstWeek the week the run starts from, 0 unless it's resumed
+     */
+    private synchronized void startRun(LottoLogic lottoLogic, LottoStatistics statistics, Checkpoint checkpoint,
+                                       final long firstWeek) {
+        latestStatistics = statistics.snapshot();
+        // The draw history, the seen draws and jump to win only know 7 of 40.
+        boolean defaultFormat = lottoLogic.getGameFormat() == GameFormat.DEFAULT;
+        boolean jump = jumpToWin && ticketBook == null && defaultFormat;
+        boolean parallelRun = !jump && parallel && ticketBook == null && weeksPerSecond == UNTHROTTLED;
+        boolean pipelinedRun = !jump && !parallelRun && pipelined && weeksPerSecond == UNTHROTTLED;
+        // Jump to win and parallel runs don't draw the weeks one by one.
+        final boolean historyRun = recordHistory && defaultFormat && !jump && !parallelRun;
+
+        // The generator of a pipelined run is ahead of its statistics, so they can't be saved together.
+        final LottoRun run = new LottoRun(lottoLogic, statistics, ticketBook, selectionMask,
+            REQUIRED_AMOUNT, pipelinedRun ? null : checkpoint, defaultFormat ? combinations : null);
+        currentRun = run;
+        calculatingLotto = true;
+        lottoExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // The previous run has had its last tick, so it can't capture anymore.
+                checkpointWriter.enable();
+                // The previous run has stopped counting, so the weeks start over.
+                WEEKS = firstWeek;
+                run.begin();
+                combinations.clear();
+                metrics.resetSpeed();
+                // Opening truncates the previous history, which may have to wait for the disk.
+                if (historyRun) {
+                    run.history = openHistory();
+                }
+            }
+        });
+        Debug.print(TAG, "startLotto", "Starting a run at " + weeksPerSecond + " weeks/s", 1, this);
+
+        if (jump) {
+            lottoTask = lottoExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    runJumpToWin(run);
+                }
+            });
+        } else if (parallelRun) {
+            lottoTask = lottoExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    runParallel(run);
+                }
+            });
+        } else if (pipelinedRun) {
+            lottoTask = lottoExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    runPipelined(run);
+                }
+            });
+        } else {
+            lottoTask = lottoExecutor.scheduleAtFixedRate(run, 0, TICK_PERIOD, TimeUnit.MILLISECONDS);
         }
     }
 
     /**
-     * Increases the iteration speed in the thread.
+     * Opens a new draw history, replacing the previous one.
+     *
+     * @return the history writer, or null if the file can't be created
      */
-    public void increaseSpeed() {
-        if (THREAD_SPEED > 50) {
-            THREAD_SPEED -= 100;
+    private DrawHistoryWriter openHistory() {
+        try {
+            return new DrawHistoryWriter(getHistoryFile());
+        } catch (IOException e) {
+            Debug.print(TAG, "openHistory()", "Not recording the history: " + e, 1, this);
+            return null;
         }
     }
 
     /**
-     * Decreases the iteration speed in the thread.
+     * Called when user clicks the stop iteration button to stop the lotto iteration.
+     * Takes effect immediately: the run is deactivated, its ticks are cancelled
+     * and a running iteration is interrupted.
      */
-    public void decreaseSpeed() {
-        if (THREAD_SPEED < 3000) {
-            THREAD_SPEED += 100;
+    public void stopLotto() {
+        finishRun(currentRun, true);
+        checkpointWriter.delete();
+    }
+
+    /**
+     * Deactivates the run and cancels its task, unless it has already been
+     * finished. A run which finishes itself from the lotto thread can never
+     * touch a newer run this way.
+     *
+     * @param run the run to finish
+     * @param interrupt true to interrupt the task if it's running
+     * @return false if the run wasn't the current one anymore
+     */
+    private synchronized boolean finishRun(final LottoRun run, boolean interrupt) {
+        if (run == null || run != currentRun) {
+            return false;
         }
+        currentRun = null;
+        run.active = false;
+        if (lottoTask != null) {
+            lottoTask.cancel(interrupt);
+        }
+        // Runs after the last tick of the run, on the same thread.
+        lottoExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                run.closeHistory();
+            }
+        });
+        calculatingLotto = false;
+        return true;
+    }
+
+    /**
+     * Sets the target speed of the lotto. Takes effect immediately, also during a run.
+     *
+     * @param target weeks per second, at least MIN_WEEKS_PER_SECOND, or UNTHROTTLED
+     *               to iterate as fast as possible
+     */
+    public void setWeeksPerSecond(double target) {
+        weeksPerSecond = Math.max(MIN_WEEKS_PER_SECOND, target);
+    }
+
+    /**
+     * Returns the target speed of the lotto.
+     *
+     * @return weeks per second, or UNTHROTTLED
+     */
+    public double getWeeksPerSecond() {
+        return weeksPerSecond;
     }
 
     public void setDifficulty(int difficulty) {
-        REQUIRED_AMOUNT = difficulty;
+        REQUIRED_AMOUNT = Math.min(difficulty, gameFormat.getPicks());
     }
 
     /**
-     * Called when thread is started.
+     * Sets the game format of the following runs. The difficulty is lowered to
+     * the numbers drawn by the format if it's higher. Takes effect on the next start.
+     *
+     * @param format the game format
      */
-    @Override
-    public void run() {
-        // While we're calculating (user has not clicked "stop iteration" yet),
-        // run this loop.
-        while (calculatingLotto) {
+    public void setGameFormat(GameFormat format) {
+        gameFormat = format;
+        REQUIRED_AMOUNT = Math.min(REQUIRED_AMOUNT, format.getPicks());
+    }
+
+    /**
+     * Returns the game format of the current (or the next) run.
+     *
+     * @return the game format
+     */
+    public GameFormat getGameFormat() {
+        return gameFormat;
+    }
+
+    /**
+     * Toggles the jump to win mode. Instead of iterating the weeks, the week of
+     * the first win is sampled directly from the exact probability of a winning
+     * week, and only the winning draw is generated. Takes effect on the next start.
+     *
+     * @param enabled true to enable the jump to win mode
+     */
+    public void setJumpToWin(boolean enabled) {
+        jumpToWin = enabled;
+    }
+
+    /**
+     * Checks if the jump to win mode is enabled.
+     *
+     * @return true if the jump to win mode is enabled
+     */
+    public boolean isJumpToWin() {
+        return jumpToWin;
+    }
+
+    /**
+     * Sets the type of the random source used by the next start.
+     *
+     * @param type the random source type
+     */
+    public void setRandomSourceType(RandomSourceType type) {
+        randomSourceType = type;
+    }
+
+    /**
+     * Fixes the seed of the following runs, so that they draw exactly the
+     * same numbers week for week.
+     *
+     * @param replaySeed the seed to use
+     */
+    public void setSeed(long replaySeed) {
+        seed = replaySeed;
+        fixedSeed = true;
+    }
+
+    /**
+     * Goes back to seeding every run from the clock.
+     */
+    public void clearSeed() {
+        fixedSeed = false;
+    }
+
+    /**
+     * Returns the seed of the current (or the latest) run, which can be
+     * given to {@link #setSeed(long)} to replay it.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Toggles recording every draw of the following runs into the draw history
+     * file, five bytes per week. Only the runs on the lotto thread are recorded,
+     * not the parallel or the jump to win ones. Takes effect on the next start.
+     *
+     * @param enabled true to record the draw history
+     */
+    public void setRecordHistory(boolean enabled) {
+        recordHistory = enabled;
+    }
+
+    /**
+     * Checks if the draws are recorded into the draw history file.
+     *
+     * @return true if the history is recorded
+     */
+    public boolean isRecordHistory() {
+        return recordHistory;
+    }
+
+    /**
+     * Returns the draw history of the latest recorded run, which can be read
+     * with a DrawHistoryReader once the run is over. Week 0 of the history is
+     * the first week of the run.
+     *
+     * @return the draw history file
+     */
+    public File getHistoryFile() {
+        return new File(getFilesDir(), HISTORY_FILE);
+    }
+
+    /**
+     * Toggles running unthrottled runs on all the available cores.
+     * Takes effect on the next start.
+     *
+     * @param enabled true to spread the weeks across all the cores
+     */
+    public void setParallel(boolean enabled) {
+        parallel = enabled;
+    }
+
+    /**
+     * Checks if unthrottled runs use all the available cores.
+     *
+     * @return true if the parallel mode is enabled
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Toggles running unthrottled runs as a pipeline, which draws, matches and
+     * records the weeks on three threads at once. Takes effect on the next
+     * start, and a pipelined run stays unthrottled until it stops. All cores
+     * takes precedence over the pipeline for single tickets.
+     *
+     * @param enabled true to split the weeks of a run into pipeline stages
+     */
+    public void setPipelined(boolean enabled) {
+        pipelined = enabled;
+    }
+
+    /**
+     * Checks if unthrottled runs are pipelined.
+     *
+     * @return true if the pipeline mode is enabled
+     */
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * One run of the lotto. Scheduled at a fixed rate, every tick runs as many
+     * weeks as the target speed allows for the time passed since the previous
+     * tick. The budget is computed from the clock, so the rate doesn't drift by
+     * the time the work takes. When the target is UNTHROTTLED, the tick keeps
+     * iterating until the run is stopped or the target is lowered again.
+     *
+     * Everything the weeks need is owned by the run, so a run which is
+     * still winding down never touches the state of the next one.
+     */
+    private final class LottoRun implements Runnable {
+        volatile boolean active = true;
+
+        private final LottoLogic lottoLogic;
+        private final LottoStatistics statistics;
+        private final TicketBook ticketBook;
+        private final long selectionMask;
+        private final int requiredAmount;
+        private final Checkpoint checkpoint;
+        private final CombinationBitmap seenDraws;
+        // Opened and only touched on the lotto thread.
+        DrawHistoryWriter history;
+
+        // The clocks are set by begin(), once the run is on the lotto thread.
+        private long lastTick;
+        // The first week is drawn right away.
+        private double weekBudget = 1;
+        private int bestMatch;
+        private int latestMatch;
+        private long latestDraw;
+        // The block of simulateBlock(), allocated on the first block.
+        private long[] blockDraws;
+        private int[] blockMatches;
+
+        private long lastSpeedCheck;
+        private long weeksAtSpeedCheck;
+        private double measuredSpeed;
+        private long lastCheckpoint;
+
+        private final Debug.Limiter tickLog = new Debug.Limiter(TICK_LOG_INTERVAL);
+        private final Debug.Message tickMessage = new Debug.Message() {
+            @Override
+            public String get() {
+                return "Amount of same numbers: " + latestMatch;
+            }
+        };
+
+        LottoRun(LottoLogic lottoLogic, LottoStatistics statistics, TicketBook ticketBook,
+                 long selectionMask, int requiredAmount, Checkpoint checkpoint, CombinationBitmap seenDraws) {
+            this.lottoLogic = lottoLogic;
+            this.statistics = statistics;
+            this.ticketBook = ticketBook;
+            this.selectionMask = selectionMask;
+            this.requiredAmount = requiredAmount;
+            this.checkpoint = checkpoint;
+            this.seenDraws = seenDraws;
+        }
+
+        /**
+         * Starts the clocks of the run from now and from the current week.
+         * Called on the lotto thread before the run's first tick.
+         */
+        void begin() {
+            long now = System.nanoTime();
+            lastTick = now;
+            lastSpeedCheck = now;
+            lastCheckpoint = now;
+            weeksAtSpeedCheck = WEEKS;
+        }
+
+        @Override
+        public void run() {
+            if (!active) {
+                return;
+            }
+
+            double target = weeksPerSecond;
+            if (target == UNTHROTTLED) {
+                runUnthrottled();
+                lastTick = System.nanoTime();
+                weekBudget = 0;
+                return;
+            }
+
+            long now = System.nanoTime();
+            // At most one second of weeks is caught up after a stall.
+            weekBudget = Math.min(weekBudget + target * (now - lastTick) / 1e9, target + 1);
+            lastTick = now;
+            long weeks = (long) weekBudget;
+            if (weeks > 0) {
+                weekBudget -= weeks;
+                if (!simulateWeeks(weeks)) {
+                    publish();
+                    Debug.print(tickLog, TAG, "checkNumbers", tickMessage, 1, LottoService.this);
+                }
+            }
+        }
+
+        /**
+         * Iterates the weeks without any pacing. The clock is only read and the
+         * progress published every TURBO_CLOCK_MASK + 1 weeks, which run as one block.
+         */
+        private void runUnthrottled() {
+            while (active && weeksPerSecond == UNTHROTTLED) {
+                boolean won = simulateBlock();
+                if (won) {
+                    return;
+                }
+                publish();
+            }
+        }
+
+        /**
+         * Runs one block of BLOCK_WEEKS weeks: the whole block is drawn, then
+         * matched with the BlockKernel, or the TicketBook of a syndicate, then
+         * recorded, and the win and the stop are only checked once per block.
+         * The block is timed into the block metrics as a whole.
+         *
+         * @return true if the run was won
+         */
+        private boolean simulateBlock() {
+            if (blockDraws == null) {
+                blockDraws = new long[BLOCK_WEEKS];
+                blockMatches = new int[BLOCK_WEEKS];
+            }
+            boolean trace = Debug.isTracing();
+            long drawStart = System.nanoTime();
+            if (trace) {
+                Debug.beginSection(Debug.TRACE_DRAW);
+            }
+            lottoLogic.drawBlock(blockDraws, BLOCK_WEEKS);
+            if (trace) {
+                Debug.endSection();
+            }
+            long matchStart = System.nanoTime();
+            if (trace) {
+                Debug.beginSection(Debug.TRACE_MATCH);
+            }
+            int best;
+            boolean won;
+            int weeks;
+            if (ticketBook != null) {
+                // The book stops in the week the last ticket wins.
+                weeks = ticketBook.matchBlock(blockDraws, BLOCK_WEEKS, WEEKS, blockMatches, ticketBook.size());
+                won = ticketBook.allWon();
+                best = ticketBook.getBestMatch();
+            } else {
+                best = BlockKernel.match(blockDraws, BLOCK_WEEKS, selectionMask, blockMatches);
+                won = best >= requiredAmount;
+                weeks = won ? BlockKernel.firstWin(blockMatches, BLOCK_WEEKS, requiredAmount) + 1 : BLOCK_WEEKS;
+            }
+            for (int i = 0; i < weeks; i++) {
+                if (!appendHistory(blockDraws[i])) {
+                    return false;
+                }
+            }
+            statistics.recordBlock(blockDraws, blockMatches, weeks);
+            if (seenDraws != null) {
+                for (int i = 0; i < weeks; i++) {
+                    seenDraws.record(blockDraws[i], WEEKS + i);
+                }
+            }
+            latestDraw = blockDraws[weeks - 1];
+            latestMatch = blockMatches[weeks - 1];
+            // A single ticket's winning week has more same numbers than any week before it,
+            // and the book has only matched the weeks up to its last win.
+            bestMatch = Math.max(bestMatch, won && ticketBook == null ? latestMatch : best);
+            if (trace) {
+                Debug.endSection();
+            }
+            metrics.recordBlock(matchStart - drawStart, System.nanoTime() - matchStart, weeks);
+
+            if (won) {
+                WEEKS += weeks - 1;
+                // The run may have been stopped during the block.
+                if (active) {
+                    win(latestMatch);
+                }
+                return true;
+            }
+            WEEKS += weeks;
+            return false;
+        }
+
+        /**
+         * Runs the given amount of weeks, or less if the run is stopped or won.
+         * When tracing, every draw and match is a trace section of its own.
+         * The draw and the match of the sampled weeks are timed into the metrics.
+         *
+         * @param weeks the most weeks to run
+         * @return true if the run was won
+         */
+        private boolean simulateWeeks(long weeks) {
+            boolean trace = Debug.isTracing();
+            for (long i = 0; i < weeks && active; i++) {
+                boolean sampled = SimulationMetrics.isSampled(WEEKS);
+                long drawStart = sampled ? System.nanoTime() : 0;
+                if (trace) {
+                    Debug.beginSection(Debug.TRACE_DRAW);
+                }
+                long draw = lottoLogic.draw();
+                if (trace) {
+                    Debug.endSection();
+                }
+                if (sampled) {
+                    metrics.recordDraw(System.nanoTime() - drawStart);
+                }
+                if (!appendHistory(draw)) {
+                    return false;
+                }
+                long matchStart = sampled ? System.nanoTime() : 0;
+                if (trace) {
+                    Debug.beginSection(Debug.TRACE_MATCH);
+                }
+                int sameNumbers;
+                boolean won;
+                if (ticketBook != null) {
+                    ticketBook.match(draw, WEEKS);
+                    sameNumbers = ticketBook.getWeekBestMatch();
+                    won = ticketBook.allWon();
+                } else {
+                    sameNumbers = lottoLogic.countMatches(selectionMask);
+                    won = sameNumbers >= requiredAmount;
+                }
+                record(draw, sameNumbers);
+                if (trace) {
+                    Debug.endSection();
+                }
+                if (sampled) {
+                    metrics.recordMatch(System.nanoTime() - matchStart);
+                }
+
+                if (won) {
+                    win(sameNumbers);
+                    return true;
+                }
+                WEEKS++;
+            }
+            return false;
+        }
+
+        /**
+         * Records the weeks which the pipeline has matched, publishing the progress
+         * every TURBO_CLOCK_MASK + 1 weeks, until the run is stopped or won.
+         *
+         * @param pipeline the started pipeline of the run
+         */
+        void publishPipeline(WeekPipeline pipeline) {
+            long[] weeks = new long[2 * WeekPipeline.BATCH_WEEKS];
+            long nextPublish = WEEKS + TURBO_CLOCK_MASK + 1;
+            int misses = 0;
+            while (active && !pipeline.isDone()) {
+                int count = pipeline.poll(weeks, WeekPipeline.BATCH_WEEKS);
+                if (count == 0) {
+                    WeekPipeline.backOff(misses++);
+                    continue;
+                }
+                misses = 0;
+                // Stopped runs leave the rest of the batch, like simulateWeeks() does.
+                for (int i = 0; i < count && active; i++) {
+                    long draw = weeks[2 * i];
+                    long result = weeks[2 * i + 1];
+                    if (!appendHistory(draw)) {
+                        return;
+                    }
+                    int sameNumbers = WeekPipeline.getSameNumbers(result);
+                    record(draw, sameNumbers);
+                    if (WeekPipeline.hasWon(result)) {
+                        win(sameNumbers);
+                        return;
+                    }
+                    WEEKS++;
+                }
+                if (WEEKS >= nextPublish) {
+                    publish();
+                    nextPublish = WEEKS + TURBO_CLOCK_MASK + 1;
+                }
+            }
+        }
+
+        /**
+         * Appends the draw to the draw history, if it's recorded.
+         *
+         * @param draw the drawn numbers as a bitmask
+         * @return false if stopped while the history was waiting for the disk
+         */
+        private boolean appendHistory(long draw) {
+            if (history != null) {
+                try {
+                    history.append(draw);
+                } catch (InterruptedException e) {
+                    // Stopped while the history was waiting for the disk.
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Records the current week into the statistics.
+         *
+         * @param draw the drawn numbers as a bitmask
+         * @param sameNumbers amount of same numbers in the week
+         */
+        private void record(long draw, int sameNumbers) {
+            statistics.record(draw, sameNumbers);
+            if (seenDraws != null) {
+                seenDraws.record(draw, WEEKS);
+            }
+            latestDraw = draw;
+            latestMatch = sameNumbers;
+            if (sameNumbers > bestMatch) {
+                bestMatch = sameNumbers;
+            }
+        }
+
+        /**
+         * Publishes the winning week and declares the victory.
+         *
+         * @param sameNumbers amount of same numbers in the winning week
+         */
+        private void win(int sameNumbers) {
+            latestStatistics = statistics.snapshot();
+            publishProgress(latestDraw, sameNumbers, bestMatch, measuredSpeed, statistics);
+            declareVictory(this, sameNumbers, requiredAmount);
+        }
+
+        /**
+         * Writes the rest of the draw history and closes it. Must be called
+         * on the lotto thread, after the last tick of the run.
+         */
+        void closeHistory() {
+            if (history == null) {
+                return;
+            }
             try {
-                initButtons();
-                checkNumbers();
-                // Broadcast the random numbers that the computer randomly generated
-                // and broadcast the weeks (1 iteration = 1 week).
-                createBroadcast(new Intent("lotto")
-                    .putExtra("randomNumbers", new ArrayList<>(LottoLogic.getRandomNumbers()))
-                    .putExtra("weeks", WEEKS));
-
-                Thread.sleep(THREAD_SPEED);
+                history.close();
+                Debug.print(TAG, "closeHistory()", "Recorded " + history.getWeeks() + " weeks", 1, LottoService.this);
+            } catch (IOException e) {
+                Debug.print(TAG, "closeHistory()", "History is incomplete: " + e, 1, LottoService.this);
             } catch (InterruptedException e) {
-                e.printStackTrace();
+                Thread.currentThread().interrupt();
+            }
+            history = null;
+        }
+
+        /**
+         * Publishes the progress, refreshing the measured speed and the
+         * statistics snapshot every TURBO_PUBLISH_INTERVAL, and saves a
+         * checkpoint every CHECKPOINT_INTERVAL.
+         */
+        private void publish() {
+            Debug.beginSection(Debug.TRACE_PUBLISH);
+            try {
+                long now = System.nanoTime();
+                long elapsed = now - lastSpeedCheck;
+                if (elapsed >= TURBO_PUBLISH_INTERVAL * 1000000L) {
+                    measuredSpeed = (WEEKS - weeksAtSpeedCheck) * 1e9 / elapsed;
+                    metrics.recordSpeed(WEEKS - weeksAtSpeedCheck, elapsed);
+                    latestStatistics = statistics.snapshot();
+                    lastSpeedCheck = now;
+                    weeksAtSpeedCheck = WEEKS;
+                }
+                // A stopped run may still publish once, but it must not save the run again.
+                if (checkpoint != null && active && now - lastCheckpoint >= CHECKPOINT_INTERVAL * 1000000L) {
+                    checkpoint.setWeeks(WEEKS);
+                    checkpoint.setWeeksPerSecond(weeksPerSecond);
+                    if (checkpointWriter.capture(checkpoint)) {
+                        lastCheckpoint = now;
+                        if (Debug.isEnabled(2)) {
+                            Debug.print(TAG, "checkpoint", "Captured in " + checkpointWriter.getLastCaptureNanos()
+                                + " ns, previous write took " + checkpointWriter.getLastWriteNanos() + " ns",
+                                2, LottoService.this);
+                        }
+                    }
+                }
+                int best = ticketBook != null ? ticketBook.getBestMatch() : bestMatch;
+                publishProgress(latestDraw, latestMatch, best, measuredSpeed, statistics);
+                metrics.recordPublish(System.nanoTime() - now);
+            } finally {
+                Debug.endSection();
             }
-            WEEKS++;
         }
     }
 
     /**
-     * Initializes the button grid. Called every iteration to remove
-     * the random button styles so they can be added on different numbers again.
+     * Samples the first winning week and its draw with WaitingTime, which takes
+     * the same few microseconds whatever the difficulty is.
+     *
+     * @param run the run this belongs to
      */
-    private void initButtons() {
-        for (Button b : buttons) {
-            b.setBackground(getResources().getDrawable(R.drawable.number_button));
+    private void runJumpToWin(LottoRun run) {
+        WaitingTime waitingTime = new WaitingTime(Long.bitCount(run.selectionMask), run.requiredAmount);
+        RandomSource random = randomSourceType.create(seed);
+
+        long winningWeek = waitingTime.sampleWinningWeek(random);
+        long winningDraw = waitingTime.sampleWinningDraw(random, run.selectionMask);
+        if (run.active) {
+            WEEKS += winningWeek;
+            int sameNumbers = Long.bitCount(winningDraw & run.selectionMask);
+            publishProgress(winningDraw, sameNumbers, sameNumbers, 0, latestStatistics);
+            declareVictory(run, sameNumbers, run.requiredAmount);
         }
     }
 
     /**
-     * Calls LottoLogic first to generate the random numbers and then calls LottoLogic to
-     * check how many numbers are same in the random generated numbers and the user selection.
+     * Runs the lotto on a ParallelSimulation with one worker per core.
+     * This thread only waits for the workers and publishes their progress
+     * every TURBO_PUBLISH_INTERVAL milliseconds.
+     *
+     * @param run the run this belongs to
      */
-    private void checkNumbers() {
-        LottoLogic.generateLottoNumbers();
-        int sameNumbers = LottoLogic.checkNumbers(selection);
-        // If we've 7 of the same, stop this service and stop lotto as well.
-        if (sameNumbers == REQUIRED_AMOUNT) {
-            stopSelf();
-            stopLotto();
-            // Broadcast victory to the main activity and display notification to user.
-            createBroadcast(new Intent("lotto")
-                .putExtra("victory", true)
-                .putExtra("amount", REQUIRED_AMOUNT));
-            displayNotification("You won!", "Found " + REQUIRED_AMOUNT + " of the same numbers!");
+    private void runParallel(LottoRun run) {
+        long weeksAtStart = WEEKS;
+        ParallelSimulation simulation = new ParallelSimulation(run.selectionMask, run.requiredAmount,
+            seed, ParallelSimulation.defaultWorkers(), Long.MAX_VALUE - WEEKS, true, run.lottoLogic.getGameFormat());
+        simulation.start();
+
+        try {
+            long lastPublish = System.nanoTime();
+            long weeksAtLastPublish = WEEKS;
+            ParallelSimulation.Result result = null;
+            while (result == null) {
+                if (!run.active) {
+                    simulation.cancel();
+                }
+                result = simulation.awaitResult(TURBO_PUBLISH_INTERVAL, TimeUnit.MILLISECONDS);
+
+                long now = System.nanoTime();
+                if (result == null) {
+                    WEEKS = weeksAtStart + simulation.getWeeksDone();
+                } else if (result.getFirstWinningWeek() >= 0) {
+                    // Like on the other runs, WEEKS is the index of the winning week, not the amount of weeks.
+                    WEEKS = weeksAtStart + result.getFirstWinningWeek();
+                } else {
+                    WEEKS = weeksAtStart + result.getTotalWeeks();
+                }
+                double weeksPerSecond = (WEEKS - weeksAtLastPublish) * 1e9 / (now - lastPublish);
+                metrics.recordSpeed(WEEKS - weeksAtLastPublish, now - lastPublish);
+                long randomMask = result != null ? result.getWinningDraw() : 0L;
+                latestStatistics = result != null ? result.getStatistics() : simulation.snapshotStatistics();
+                publishProgress(randomMask, Long.bitCount(randomMask & run.selectionMask), simulation.getBestMatch(),
+                    weeksPerSecond, latestStatistics);
+                lastPublish = now;
+                weeksAtLastPublish = WEEKS;
+            }
+
+            if (result.getFirstWinningWeek() >= 0 && run.active) {
+                declareVictory(run, Long.bitCount(result.getWinningDraw() & run.selectionMask),
+                    run.requiredAmount);
+            }
+        } catch (InterruptedException e) {
+            // Stopped by stopLotto(), the workers only need to be told.
+            simulation.cancel();
         }
-        Debug.print(TAG, "checkNumbers", "Amount of same numbers: "+sameNumbers, 1, this);
     }
 
     /**
-     * Handles creating the broadcast.
-     * @param broadcastIntent the operation to send the broadcast.
+     * Runs the lotto as a WeekPipeline: the numbers are drawn and matched on
+     * threads of their own, and this thread records and publishes the weeks.
+     * A syndicate's ticket book is then only read here for the progress, which
+     * may lag the matcher by a few weeks.
+     *
+     * @param run the run this belongs to
+     */
+    private void runPipelined(LottoRun run) {
+        WeekPipeline.Matcher matcher = run.ticketBook != null ? WeekPipeline.ticketBook(run.ticketBook)
+            : WeekPipeline.singleTicket(run.selectionMask, run.requiredAmount);
+        WeekPipeline pipeline = new WeekPipeline(run.lottoLogic, matcher, WEEKS, WeekPipeline.DEFAULT_CAPACITY);
+        latestPipeline = pipeline;
+        pipeline.start();
+        try {
+            run.publishPipeline(pipeline);
+        } finally {
+            pipeline.stop();
+        }
+    }
+
+    /**
+     * Publishes the progress to the progress channel. It only replaces the latest
+     * value, so publishing often is cheap, and the listeners get it on their own
+     * executors at their own pace. The seen draws only count the weeks run on
+     * the lotto thread, so parallel and jump to win runs don't report any.
+     *
+     * @param randomMask the latest random numbers, 0 if there is nothing to show
+     * @param latestMatch amount of same numbers in the latest random numbers
+     * @param bestMatch the most same numbers found so far
+     * @param weeksPerSecond the iteration speed, 0 if unknown
+     * @param statistics the statistics whose match histogram is published
+     */
+    private void publishProgress(long randomMask, int latestMatch, int bestMatch, double weeksPerSecond,
+                                 LottoStatistics statistics) {
+        int winners = ticketBook != null ? ticketBook.getWinnerCount() : 0;
+        progress.publish(randomMask, WEEKS, latestMatch, bestMatch, winners, weeksPerSecond,
+            combinations.getDistinct(), combinations.getFirstRepeatWeek(), statistics);
+    }
+
+    /**
+     * Stops the service and the lotto, then tells the victory to the progress
+     * listeners and displays a notification to the user. Does nothing if the
+     * run has been stopped, or another one started, in the meantime.
+     *
+     * @param run the run which won
+     * @param sameNumbers amount of same numbers in the winning week
+     * @param requiredAmount amount of same numbers the run needed to win, which
+     *                       the difficulty setting may have changed since
      */
-    private void createBroadcast(Intent broadcastIntent) {
-        LocalBroadcastManager manager = LocalBroadcastManager.getInstance(this);
-        manager.sendBroadcast(broadcastIntent);
+    private void declareVictory(LottoRun run, int sameNumbers, int requiredAmount) {
+        if (!finishRun(run, false)) {
+            return;
+        }
+        stopSelf();
+        checkpointWriter.delete();
+        SystemTicket system = ticketBook == null ? systemTicket : null;
+        long rows = system != null ? system.getWinningRows(sameNumbers, requiredAmount) : 1;
+        progress.publishVictory(requiredAmount, rows);
+        displayNotification("You won!", "Found " + requiredAmount + " of the same numbers"
+            + (rows > 1 ? " on " + rows + " rows!" : "!"));
     }
 
     /**
@@ -235,6 +1162,73 @@ public class LottoService extends Service implements Runnable {
         }
     }
 
+    /**
+     * Returns the channel which holds the latest progress of the run. Poll it
+     * at whatever rate suits, or add a listener to it.
+     *
+     * @return the progress channel
+     */
+    public ProgressChannel getProgressChannel() {
+        return progress;
+    }
+
+    /**
+     * Returns the statistics of the current run: the match histogram, the
+     * frequency of every number and pair, and the longest drought between wins.
+     * The snapshot is refreshed whenever progress is published, and it's
+     * never modified afterwards.
+     *
+     * @return the latest statistics snapshot, or null if nothing has run yet
+     */
+    public LottoStatistics getStatistics() {
+        return latestStatistics;
+    }
+
+    /**
+     * Returns a snapshot of the metrics of the simulation: the speed, the
+     * latencies of drawing, matching, publishing and rendering, and the
+     * allocated bytes per week.
+     *
+     * @return the metrics snapshot
+     */
+    public SimulationMetrics getMetrics() {
+        return metrics.snapshot();
+    }
+
+    /**
+     * Records the time from publishing a progress to rendering it. Call
+     * from the main thread only.
+     *
+     * @param nanos the publish to render latency
+     */
+    public void recordRenderLatency(long nanos) {
+        metrics.recordRender(nanos);
+    }
+
+    /**
+     * Writes the metrics for "adb shell dumpsys activity service LottoService".
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.println("weeks: " + WEEKS + (calculatingLotto ? ", running" : ", stopped")
+            + ", format " + gameFormat);
+        metrics.dump(writer);
+        WeekPipeline pipeline = latestPipeline;
+        if (pipeline != null) {
+            pipeline.dump(writer);
+        }
+    }
+
+    /**
+     * Returns the writer of the checkpoints, which also tells how long
+     * capturing and writing them takes.
+     *
+     * @return the checkpoint writer
+     */
+    public CheckpointWriter getCheckpointWriter() {
+        return checkpointWriter;
+    }
+
     /**
      * Checks if the thread is running (if we're calculating lotto).
      *
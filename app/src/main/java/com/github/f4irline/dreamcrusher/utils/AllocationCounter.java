@@ -0,0 +1,28 @@
+package com.github.f4irline.dreamcrusher.utils;
+
+import com.github.f4irline.dreamcrusher.BuildConfig;
+import com.github.f4irline.dreamcrusher.engine.SimulationMetrics;
+
+/**
+ * Counts the bytes allocated by the whole process with the allocation counting
+ * of the runtime. Counting slows down every allocation a bit, so it's only
+ * switched on in debug builds, release builds report the allocations as unknown.
+ */
+public class AllocationCounter implements SimulationMetrics.AllocationProbe {
+
+    private final boolean counting;
+
+    @SuppressWarnings("deprecation")
+    public AllocationCounter() {
+        counting = BuildConfig.DEBUG;
+        if (counting) {
+            android.os.Debug.startAllocCounting();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public long getAllocatedBytes() {
+        return counting ? android.os.Debug.getGlobalAllocSize() : -1;
+    }
+}
@@ -1,6 +1,11 @@
 package com.github.f4irline.dreamcrusher.utils;
 
 import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.util.Log;
 import android.widget.Toast;
 
@@ -8,12 +13,57 @@ import com.github.f4irline.dreamcrusher.BuildConfig;
 import com.github.f4irline.dreamcrusher.R;
 
 /**
- * Handles logging for the application.
+ * Handles logging and tracing for the application.
+ *
+ * A disabled level costs one static check: messages which are expensive to
+ * build are either guarded with {@link #isEnabled(int)} or passed as a
+ * {@link Message}, which is only asked for its text when it will be shown.
+ * Messages of the hot paths go through a {@link Limiter}, which lets one
+ * through per interval and counts the rest. GUI messages are always shown
+ * on the main thread, whichever thread prints them.
  */
 public class Debug {
 
-    private static int DEBUG_LEVEL;
-    private static boolean DEBUG_GUI;
+    /**
+     * Names of the trace sections, shown in a system trace.
+     */
+    public static final String TRACE_DRAW = "lotto.draw";
+    public static final String TRACE_MATCH = "lotto.match";
+    public static final String TRACE_PUBLISH = "lotto.publish";
+
+    private static volatile int DEBUG_LEVEL;
+    private static volatile boolean DEBUG_GUI;
+    private static volatile boolean DEBUG_TRACE;
+
+    private static final Handler MAIN = new Handler(Looper.getMainLooper());
+
+    /**
+     * Builds the text of a message, only called when the message is shown.
+     */
+    public interface Message {
+        String get();
+    }
+
+    /**
+     * Checks if messages of the level are shown. Cheap enough for the hot
+     * paths, guard anything which builds a message with it.
+     *
+     * @param level - Level of the debug.
+     * @return true if the level is shown.
+     */
+    public static boolean isEnabled(int level) {
+        return BuildConfig.DEBUG && level <= DEBUG_LEVEL;
+    }
+
+    /**
+     * Checks if the trace sections are recorded. The hot loops read this once
+     * per batch of weeks and skip the sections altogether when it's false.
+     *
+     * @return true if the trace sections are recorded.
+     */
+    public static boolean isTracing() {
+        return DEBUG_TRACE && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    }
 
     /**
      *
@@ -24,26 +74,136 @@ public class Debug {
      * @param host - The host app.
      */
     public static void print (String className, String methodName, String msg, int level, Context host) {
-        if (BuildConfig.DEBUG) {
-            if (level <= DEBUG_LEVEL) {
-                if (DEBUG_GUI) {
-                    Toast.makeText(host, className + ": " + methodName + ", "+ msg, Toast.LENGTH_LONG).show();
-                } else {
-                    Log.d(className, methodName+", "+ msg);
+        if (isEnabled(level)) {
+            show(className, methodName, msg, host);
+        }
+    }
+
+    /**
+     * Prints a message which is only built if the level is enabled.
+     *
+     * @param className - Class where the debugging is happening.
+     * @param methodName - Method which is being debugged currently.
+     * @param msg - Builds the message.
+     * @param level - Level of the debug.
+     * @param host - The host app.
+     */
+    public static void print (String className, String methodName, Message msg, int level, Context host) {
+        if (isEnabled(level)) {
+            show(className, methodName, msg.get(), host);
+        }
+    }
+
+    /**
+     * Prints a message at most once per interval of the limiter. The message
+     * tells how many messages were suppressed since the previous one.
+     *
+     * @param limiter - The limiter of the message.
+     * @param className - Class where the debugging is happening.
+     * @param methodName - Method which is being debugged currently.
+     * @param msg - Builds the message.
+     * @param level - Level of the debug.
+     * @param host - The host app.
+     */
+    public static void print (Limiter limiter, String className, String methodName, Message msg, int level,
+                              Context host) {
+        if (isEnabled(level) && limiter.acquire()) {
+            int suppressed = limiter.takeSuppressed();
+            show(className, methodName, suppressed > 0
+                ? msg.get() + " (" + suppressed + " messages suppressed)" : msg.get(), host);
+        }
+    }
+
+    private static void show(String className, String methodName, String msg, Context host) {
+        // Without a host there is nothing to show a toast with.
+        if (!DEBUG_GUI || host == null) {
+            Log.d(className, methodName + ", " + msg);
+            return;
+        }
+        final Context context = host.getApplicationContext();
+        final String text = className + ": " + methodName + ", " + msg;
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            Toast.makeText(context, text, Toast.LENGTH_LONG).show();
+        } else {
+            MAIN.post(new Runnable() {
+                @Override
+                public void run() {
+                    Toast.makeText(context, text, Toast.LENGTH_LONG).show();
                 }
-            }
+            });
+        }
+    }
+
+    /**
+     * Starts a trace section, which must be ended on the same thread with
+     * {@link #endSection()}, preferably in a finally block.
+     *
+     * @param name - Name of the section, e.g. TRACE_DRAW.
+     */
+    public static void beginSection(String name) {
+        if (isTracing()) {
+            Trace.beginSection(name);
+        }
+    }
+
+    /**
+     * Ends the latest trace section of the thread.
+     */
+    public static void endSection() {
+        if (isTracing()) {
+            Trace.endSection();
         }
     }
 
     /**
      * Initializes the debug class.
      *
-     * Gets values for DEBUG_LEVEL and DEBUG_GUI from the Debug.xml resource.
+     * Gets values for DEBUG_LEVEL, DEBUG_GUI and DEBUG_TRACE from the Debug.xml resource.
      *
      * @param host - The host app.
      */
     public static void loadDebug (Context host) {
         DEBUG_LEVEL = host.getResources().getInteger(R.integer.debug_level);
         DEBUG_GUI = host.getResources().getBoolean(R.bool.debug_gui);
+        DEBUG_TRACE = host.getResources().getBoolean(R.bool.debug_trace);
+    }
+
+    /**
+     * Lets one message through per interval and counts the suppressed ones.
+     * Every frequent message should have a limiter of its own.
+     */
+    public static final class Limiter {
+        private final long intervalMillis;
+        private long nextMillis;
+        private int suppressed;
+
+        /**
+         * @param intervalMillis - The shortest time between two messages.
+         */
+        public Limiter(long intervalMillis) {
+            this.intervalMillis = intervalMillis;
+        }
+
+        /**
+         * @return true if a message can be shown now.
+         */
+        public synchronized boolean acquire() {
+            long now = SystemClock.uptimeMillis();
+            if (now >= nextMillis) {
+                nextMillis = now + intervalMillis;
+                return true;
+            }
+            suppressed++;
+            return false;
+        }
+
+        /**
+         * @return amount of messages suppressed since the previous call.
+         */
+        public synchronized int takeSuppressed() {
+            int taken = suppressed;
+            suppressed = 0;
+            return taken;
+        }
     }
 }
@@ -0,0 +1,52 @@
+package com.github.f4irline.dreamcrusher.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.view.Choreographer;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks on the main thread at the start of the next display frame.
+ *
+ * Tasks can be handed over from any thread. They travel to the main thread in
+ * pooled messages and wait in a queue which only the main thread touches, and
+ * one frame callback runs everything queued, so executing the same task
+ * objects over and over allocates nothing.
+ */
+public class FrameExecutor implements Executor {
+
+    private final Handler handler = new Handler(Looper.getMainLooper(), new Handler.Callback() {
+        @Override
+        public boolean handleMessage(Message message) {
+            pending.add((Runnable) message.obj);
+            if (!framePosted) {
+                framePosted = true;
+                Choreographer.getInstance().postFrameCallback(frameCallback);
+            }
+            return true;
+        }
+    });
+
+    // Only touched on the main thread.
+    private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+    private boolean framePosted;
+
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            framePosted = false;
+            // Tasks queued while these run wait for the next frame.
+            for (int i = pending.size(); i > 0; i--) {
+                pending.poll().run();
+            }
+        }
+    };
+
+    @Override
+    public void execute(Runnable command) {
+        handler.sendMessage(handler.obtainMessage(0, command));
+    }
+}
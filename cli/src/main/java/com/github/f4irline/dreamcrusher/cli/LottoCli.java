@@ -0,0 +1,175 @@
+package com.github.f4irline.dreamcrusher.cli;
+
+import com.github.f4irline.dreamcrusher.LottoLogic;
+import com.github.f4irline.dreamcrusher.engine.BlockKernel;
+import com.github.f4irline.dreamcrusher.engine.LottoStatistics;
+import com.github.f4irline.dreamcrusher.engine.MonteCarloExperiment;
+import com.github.f4irline.dreamcrusher.engine.ParallelSimulation;
+import com.github.f4irline.dreamcrusher.engine.TicketBook;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the lotto from the command line, without Android, on the same engine
+ * as LottoService.
+ *
+ * A single ticket runs on a ParallelSimulation with the given amount of threads,
+ * so its result only depends on the seed. A syndicate of several tickets runs on
+ * one thread with a TicketBook, a block of weeks at a time, until the budget is
+ * used or it is stopped by --until-win or --until-all-win.
+ * With --trials, a MonteCarloExperiment plays the ticket until the win over and
+ * over, and estimates of the years to win are streamed as they narrow down.
+ * Progress and the final statistics are streamed to stdout as CSV or JSON lines,
+ * and the memory use doesn't depend on the amount of weeks.
+ */
+public final class LottoCli {
+
+    /**
+     * The syndicate draws and matches this many weeks at a time, and reads the clock once per block.
+     */
+    private static final int BLOCK_WEEKS = 4096;
+
+    private LottoCli() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs the simulation described by the arguments.
+     *
+     * @param args the command line arguments
+     * @param out the stream of the reports
+     * @param err the stream of the errors
+     * @return the exit status, 0 on success
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) throws InterruptedException {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.print(Options.USAGE);
+            return 2;
+        }
+
+        ReportWriter writer = ReportWriter.create(options.format, options.game, out);
+        if (options.trials > 0) {
+            writer.beginExperiment();
+            runExperiment(options, writer);
+            return 0;
+        }
+        writer.begin();
+        if (options.tickets.size() == 1) {
+            runSingle(options, writer);
+        } else {
+            runSyndicate(options, writer);
+        }
+        return 0;
+    }
+
+    private static void runSingle(Options options, ReportWriter writer) throws InterruptedException {
+        ParallelSimulation simulation = new ParallelSimulation(options.tickets.get(0), options.difficulty,
+            options.seed, options.threads, options.weeks, options.untilWin, options.game);
+        long start = System.nanoTime();
+        simulation.start();
+
+        ReportWriter.Report report = new ReportWriter.Report();
+        long wait = options.intervalMillis > 0 ? options.intervalMillis : Long.MAX_VALUE;
+        ParallelSimulation.Result result;
+        while ((result = simulation.awaitResult(wait, TimeUnit.MILLISECONDS)) == null) {
+            report.statistics = simulation.snapshotStatistics();
+            report.weeks = simulation.getWeeksDone();
+            report.bestMatch = simulation.getBestMatch();
+            fill(report, start);
+            writer.write(report);
+        }
+
+        report.finished = true;
+        report.statistics = result.getStatistics();
+        report.weeks = result.getTotalWeeks();
+        report.bestMatch = simulation.getBestMatch();
+        report.firstWinningWeek = result.getFirstWinningWeek();
+        report.winningDraw = result.getWinningDraw();
+        report.winners = result.getFirstWinningWeek() >= 0 ? 1 : 0;
+        fill(report, start);
+        writer.write(report);
+    }
+
+    private static void runExperiment(Options options, ReportWriter writer) throws InterruptedException {
+        MonteCarloExperiment experiment = new MonteCarloExperiment(options.tickets.get(0), options.difficulty,
+            options.game, options.seed, options.threads, options.trials, options.ciWidth, options.sampled);
+        long start = System.nanoTime();
+        experiment.start();
+
+        long wait = options.intervalMillis > 0 ? options.intervalMillis : Long.MAX_VALUE;
+        MonteCarloExperiment.Estimate estimate;
+        while ((estimate = experiment.awaitResult(wait, TimeUnit.MILLISECONDS)) == null) {
+            writer.writeEstimate(experiment.getEstimate(), (System.nanoTime() - start) / 1000000L);
+        }
+        writer.writeEstimate(estimate, (System.nanoTime() - start) / 1000000L);
+    }
+
+    private static void runSyndicate(Options options, ReportWriter writer) {
+        long[] ticketMasks = new long[options.tickets.size()];
+        for (int i = 0; i < ticketMasks.length; i++) {
+            ticketMasks[i] = options.tickets.get(i);
+        }
+        TicketBook ticketBook = new TicketBook(ticketMasks, options.difficulty);
+        LottoLogic lottoLogic = new LottoLogic(options.source.create(options.seed), options.game);
+        LottoStatistics statistics = new LottoStatistics(options.difficulty, options.game);
+
+        ReportWriter.Report report = new ReportWriter.Report();
+        report.statistics = statistics;
+        long start = System.nanoTime();
+        long interval = options.intervalMillis > 0 ? options.intervalMillis * 1000000L : Long.MAX_VALUE;
+        long nextReport = start + interval;
+
+        // --until-win stops at the first winning ticket, --until-all-win at the last.
+        int stopWinners = options.untilWin ? 1 : options.untilAllWin ? ticketBook.size() : Integer.MAX_VALUE;
+        long[] draws = new long[BLOCK_WEEKS];
+        int[] matches = new int[BLOCK_WEEKS];
+        long week = 0;
+        while (week < options.weeks) {
+            int count = (int) Math.min(BLOCK_WEEKS, options.weeks - week);
+            lottoLogic.drawBlock(draws, count);
+            count = ticketBook.matchBlock(draws, count, week, matches, stopWinners);
+            statistics.recordBlock(draws, matches, count);
+            if (report.firstWinningWeek < 0) {
+                int first = BlockKernel.firstWin(matches, count, options.difficulty);
+                if (first >= 0) {
+                    report.firstWinningWeek = week + first;
+                    report.winningDraw = draws[first];
+                }
+            }
+            week += count;
+            if (ticketBook.getWinnerCount() >= stopWinners) {
+                break;
+            }
+            if (System.nanoTime() - nextReport >= 0) {
+                nextReport += interval;
+                report.weeks = week;
+                report.bestMatch = ticketBook.getBestMatch();
+                report.winners = ticketBook.getWinnerCount();
+                fill(report, start);
+                writer.write(report);
+            }
+        }
+
+        report.finished = true;
+        report.weeks = week;
+        report.bestMatch = ticketBook.getBestMatch();
+        report.winners = ticketBook.getWinnerCount();
+        fill(report, start);
+        writer.write(report);
+    }
+
+    private static void fill(ReportWriter.Report report, long start) {
+        long elapsed = System.nanoTime() - start;
+        report.elapsedMillis = elapsed / 1000000L;
+        report.weeksPerSecond = elapsed > 0 ? report.weeks * 1e9 / elapsed : 0;
+    }
+}
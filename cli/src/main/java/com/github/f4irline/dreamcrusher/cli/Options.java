@@ -0,0 +1,217 @@
+package com.github.f4irline.dreamcrusher.cli;
+
+import com.github.f4irline.dreamcrusher.engine.DrawMask;
+import com.github.f4irline.dreamcrusher.engine.GameFormat;
+import com.github.f4irline.dreamcrusher.engine.ParallelSimulation;
+import com.github.f4irline.dreamcrusher.engine.RandomSourceType;
+import com.github.f4irline.dreamcrusher.engine.SystemTicket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The command line options of a simulation.
+ */
+final class Options {
+
+    static final String USAGE =
+        "Usage: dreamcrusher --ticket N,N,N,N,N,N,N [--ticket ...] [options]\n"
+            + "  --ticket LIST      a ticket of 7..12 numbers 1..40, repeat for a syndicate,\n"
+            + "                     bonus numbers follow a '+' (e.g. 1,2,3,4,5+1,2)\n"
+            + "  --game FORMAT      7/40, 6/49, 5/50+2/12 or 5/39+1/14 (default 7/40)\n"
+            + "  --difficulty N     same numbers needed to win, main and bonus together (default all)\n"
+            + "  --seed N           seed of the random numbers (default from the clock)\n"
+            + "  --threads N        worker threads of a single ticket run (default all cores)\n"
+            + "  --weeks N          week budget (default unlimited)\n"
+            + "  --until-win        stop at the first win instead of running the whole budget\n"
+            + "  --until-all-win    stop once every ticket of a syndicate has won\n"
+            + "  --trials N         run an experiment of up to N independent trials until the win\n"
+            + "  --ci-width YEARS   stop the experiment once the 95% interval of the mean years is this narrow\n"
+            + "  --sampled          sample each trial's winning week directly instead of playing it (7/40 only)\n"
+            + "  --source TYPE      random source of a syndicate run: REFERENCE, SPLITMIX, XOSHIRO\n"
+            + "  --format FORMAT    csv or json (default csv)\n"
+            + "  --interval MILLIS  time between progress reports, 0 for none (default 1000)\n";
+
+    final List<Long> tickets = new ArrayList<>();
+    GameFormat game = GameFormat.DEFAULT;
+    int difficulty = -1;
+    long seed = System.nanoTime();
+    int threads = ParallelSimulation.defaultWorkers();
+    long weeks = Long.MAX_VALUE;
+    boolean untilWin;
+    boolean untilAllWin;
+    long trials;
+    double ciWidth;
+    boolean sampled;
+    RandomSourceType source = RandomSourceType.SPLITMIX;
+    String format = "csv";
+    long intervalMillis = 1000;
+
+    private Options() {
+    }
+
+    /**
+     * Parses the command line.
+     *
+     * @param args the arguments
+     * @return the options
+     * @throws IllegalArgumentException if the arguments are invalid
+     */
+    static Options parse(String[] args) {
+        Options options = new Options();
+        List<String> ticketValues = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if (name.equals("--until-win")) {
+                options.untilWin = true;
+                continue;
+            }
+            if (name.equals("--until-all-win")) {
+                options.untilAllWin = true;
+                continue;
+            }
+            if (name.equals("--sampled")) {
+                options.sampled = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value of " + name);
+            }
+            String value = args[++i];
+            switch (name) {
+                case "--ticket":
+                    ticketValues.add(value);
+                    break;
+                case "--game":
+                    options.game = GameFormat.forName(value);
+                    break;
+                case "--difficulty":
+                    options.difficulty = parseInt(name, value, 1, DrawMask.NUMBERS_DRAWN);
+                    break;
+                case "--seed":
+                    options.seed = parseLong(name, value, Long.MIN_VALUE);
+                    break;
+                case "--threads":
+                    options.threads = parseInt(name, value, 1, Integer.MAX_VALUE);
+                    break;
+                case "--weeks":
+                    options.weeks = parseLong(name, value, 1);
+                    break;
+                case "--trials":
+                    options.trials = parseLong(name, value, 1);
+                    break;
+                case "--ci-width":
+                    options.ciWidth = parseDouble(name, value);
+                    break;
+                case "--source":
+                    try {
+                        options.source = RandomSourceType.valueOf(value.toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Unknown random source: " + value);
+                    }
+                    break;
+                case "--format":
+                    if (!value.equals("csv") && !value.equals("json")) {
+                        throw new IllegalArgumentException("Unknown format: " + value);
+                    }
+                    options.format = value;
+                    break;
+                case "--interval":
+                    options.intervalMillis = parseLong(name, value, 0);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + name);
+            }
+        }
+        if (ticketValues.isEmpty()) {
+            throw new IllegalArgumentException("At least one --ticket is needed");
+        }
+        for (String value : ticketValues) {
+            options.tickets.add(parseTicket(options.game, value));
+        }
+        if (options.difficulty < 0) {
+            options.difficulty = options.game.getPicks();
+        } else if (options.difficulty > options.game.getPicks()) {
+            throw new IllegalArgumentException("--difficulty must be at most " + options.game.getPicks()
+                + " in " + options.game);
+        }
+        if (options.untilAllWin && options.tickets.size() == 1) {
+            // Every ticket has won once the only one has.
+            options.untilWin = true;
+        }
+        if (options.trials > 0) {
+            if (options.tickets.size() > 1) {
+                throw new IllegalArgumentException("An experiment runs a single --ticket");
+            }
+            if (options.sampled && options.game != GameFormat.DEFAULT) {
+                throw new IllegalArgumentException("--sampled only works in " + GameFormat.DEFAULT);
+            }
+        } else if (options.ciWidth > 0 || options.sampled) {
+            throw new IllegalArgumentException("--ci-width and --sampled need --trials");
+        }
+        return options;
+    }
+
+    private static long parseTicket(GameFormat game, String value) {
+        String[] pools = value.split("\\+", -1);
+        if (pools.length > 2) {
+            throw new IllegalArgumentException("A ticket has at most one '+': " + value);
+        }
+        TreeSet<Integer> bits = new TreeSet<>();
+        for (String number : pools[0].split(",")) {
+            bits.add(parseInt("--ticket", number.trim(), 1, game.getMainNumbers()));
+        }
+        if (pools.length == 2) {
+            for (String number : pools[1].split(",")) {
+                bits.add(game.getMainNumbers() + parseInt("--ticket", number.trim(), 1, game.getBonusNumbers()));
+            }
+        }
+        long mask = game.toMask(bits);
+
+        if (game == GameFormat.DEFAULT) {
+            if (bits.size() < DrawMask.NUMBERS_DRAWN || bits.size() > SystemTicket.MAX_SYSTEM_NUMBERS) {
+                throw new IllegalArgumentException("A ticket needs " + DrawMask.NUMBERS_DRAWN + ".."
+                    + SystemTicket.MAX_SYSTEM_NUMBERS + " different numbers: " + value);
+            }
+        } else if (!game.isValidTicket(mask)) {
+            throw new IllegalArgumentException("A " + game + " ticket needs " + game.getMainPicks()
+                + " different numbers and " + game.getBonusPicks() + " different bonus numbers: " + value);
+        }
+        return mask;
+    }
+
+    private static int parseInt(String name, String value, int min, int max) {
+        long parsed = parseLong(name, value, min);
+        if (parsed > max) {
+            throw new IllegalArgumentException(name + " must be at most " + max + ": " + value);
+        }
+        return (int) parsed;
+    }
+
+    private static double parseDouble(String name, String value) {
+        double parsed;
+        try {
+            parsed = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " needs a number: " + value);
+        }
+        if (!(parsed > 0) || Double.isInfinite(parsed)) {
+            throw new IllegalArgumentException(name + " must be more than 0: " + value);
+        }
+        return parsed;
+    }
+
+    private static long parseLong(String name, String value, long min) {
+        long parsed;
+        try {
+            parsed = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " needs a number: " + value);
+        }
+        if (parsed < min) {
+            throw new IllegalArgumentException(name + " must be at least " + min + ": " + value);
+        }
+        return parsed;
+    }
+}
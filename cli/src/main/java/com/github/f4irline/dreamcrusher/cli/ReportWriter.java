@@ -0,0 +1,262 @@
+package com.github.f4irline.dreamcrusher.cli;
+
+import com.github.f4irline.dreamcrusher.engine.DrawMask;
+import com.github.f4irline.dreamcrusher.engine.GameFormat;
+import com.github.f4irline.dreamcrusher.engine.LottoStatistics;
+import com.github.f4irline.dreamcrusher.engine.MonteCarloExperiment;
+
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * Streams the reports of a simulation, one line per report.
+ *
+ * Every report is written and flushed right away, so nothing builds up
+ * however long the simulation runs. Progress reports and the final report
+ * share the same fields, the final one also has the number frequencies.
+ * The winning bonus numbers and the bonus frequencies are only written for
+ * games with bonus numbers. An experiment writes estimates of the years to
+ * win instead, the final one after the last trial.
+ */
+abstract class ReportWriter {
+
+    final PrintStream out;
+    final GameFormat game;
+
+    ReportWriter(PrintStream out, GameFormat game) {
+        this.out = out;
+        this.game = game;
+    }
+
+    /**
+     * Returns the writer of the given format.
+     *
+     * @param format csv or json
+     * @param game the game format of the simulation
+     * @param out the stream to write to
+     * @return the report writer
+     */
+    static ReportWriter create(String format, GameFormat game, PrintStream out) {
+        return format.equals("json") ? new Json(out, game) : new Csv(out, game);
+    }
+
+    /**
+     * Writes anything which comes before the first report.
+     */
+    void begin() {
+    }
+
+    /**
+     * Writes anything which comes before the first estimate of an experiment.
+     */
+    void beginExperiment() {
+    }
+
+    /**
+     * Writes a report.
+     *
+     * @param report the report
+     */
+    abstract void write(Report report);
+
+    /**
+     * Writes an estimate of an experiment.
+     *
+     * @param estimate the estimate
+     * @param elapsedMillis the time since the experiment started
+     */
+    abstract void writeEstimate(MonteCarloExperiment.Estimate estimate, long elapsedMillis);
+
+    /**
+     * The state of a simulation at one point.
+     */
+    static final class Report {
+        boolean finished;
+        long elapsedMillis;
+        long weeks;
+        double weeksPerSecond;
+        int bestMatch;
+        int winners;
+        long firstWinningWeek = -1;
+        long winningDraw;
+        LottoStatistics statistics;
+    }
+
+    String numbers(long mask, char separator) {
+        StringBuilder numbers = new StringBuilder();
+        for (int bit : DrawMask.toNumbers(mask)) {
+            if (numbers.length() > 0) {
+                numbers.append(separator);
+            }
+            numbers.append(game.getNumber(bit));
+        }
+        return numbers.toString();
+    }
+
+    static String years(double years) {
+        return Double.isNaN(years) || Double.isInfinite(years) ? "" : String.format(Locale.US, "%.3f", years);
+    }
+
+    String frequencyName(int bit) {
+        return (game.isBonus(bit) ? "bonus_" : "number_") + game.getNumber(bit);
+    }
+
+    /**
+     * Comma separated values with a header line. The number frequencies are
+     * left empty on the progress lines.
+     */
+    private static final class Csv extends ReportWriter {
+
+        Csv(PrintStream out, GameFormat game) {
+            super(out, game);
+        }
+
+        @Override
+        void begin() {
+            StringBuilder header = new StringBuilder("type,elapsed_ms,weeks,weeks_per_second,best_match,"
+                + "winners,hits,longest_drought,first_winning_week,winning_draw");
+            if (game.getBonusPicks() > 0) {
+                header.append(",winning_bonus");
+            }
+            for (int i = 0; i <= DrawMask.NUMBERS_DRAWN; i++) {
+                header.append(",matches_").append(i);
+            }
+            for (int i = 1; i <= game.getHighestNumber(); i++) {
+                header.append(',').append(frequencyName(i));
+            }
+            out.println(header);
+            out.flush();
+        }
+
+        @Override
+        void write(Report report) {
+            LottoStatistics statistics = report.statistics;
+            StringBuilder line = new StringBuilder(512)
+                .append(report.finished ? "result" : "progress")
+                .append(',').append(report.elapsedMillis)
+                .append(',').append(report.weeks)
+                .append(',').append(String.format(Locale.US, "%.1f", report.weeksPerSecond))
+                .append(',').append(report.bestMatch)
+                .append(',').append(report.winners)
+                .append(',').append(statistics.getHits())
+                .append(',').append(statistics.getLongestDrought())
+                .append(',').append(report.firstWinningWeek)
+                .append(',').append(numbers(report.winningDraw & game.getMainMask(), ' '));
+            if (game.getBonusPicks() > 0) {
+                line.append(',').append(numbers(report.winningDraw & game.getBonusMask(), ' '));
+            }
+            for (int i = 0; i <= DrawMask.NUMBERS_DRAWN; i++) {
+                line.append(',').append(statistics.getMatchCount(i));
+            }
+            for (int i = 1; i <= game.getHighestNumber(); i++) {
+                line.append(',');
+                if (report.finished) {
+                    line.append(statistics.getNumberFrequency(i));
+                }
+            }
+            out.println(line);
+            out.flush();
+        }
+
+        @Override
+        void beginExperiment() {
+            out.println("type,elapsed_ms,trials,mean_years,ci_low,ci_high,ci_width,sd_years,"
+                + "min_years,median_years,p90_years,p99_years,max_years");
+            out.flush();
+        }
+
+        @Override
+        void writeEstimate(MonteCarloExperiment.Estimate estimate, long elapsedMillis) {
+            out.println((estimate.isFinished() || estimate.isCancelled() ? "result" : "estimate")
+                + ',' + elapsedMillis
+                + ',' + estimate.getTrials()
+                + ',' + years(estimate.getMean())
+                + ',' + years(estimate.getLow())
+                + ',' + years(estimate.getHigh())
+                + ',' + years(estimate.getWidth())
+                + ',' + years(estimate.getStandardDeviation())
+                + ',' + years(estimate.getMin())
+                + ',' + years(estimate.getMedian())
+                + ',' + years(estimate.getP90())
+                + ',' + years(estimate.getP99())
+                + ',' + years(estimate.getMax()));
+            out.flush();
+        }
+    }
+
+    /**
+     * One JSON object per line.
+     */
+    private static final class Json extends ReportWriter {
+
+        Json(PrintStream out, GameFormat game) {
+            super(out, game);
+        }
+
+        @Override
+        void write(Report report) {
+            LottoStatistics statistics = report.statistics;
+            StringBuilder line = new StringBuilder(512)
+                .append("{\"type\":\"").append(report.finished ? "result" : "progress").append('"')
+                .append(",\"elapsed_ms\":").append(report.elapsedMillis)
+                .append(",\"weeks\":").append(report.weeks)
+                .append(",\"weeks_per_second\":").append(String.format(Locale.US, "%.1f", report.weeksPerSecond))
+                .append(",\"best_match\":").append(report.bestMatch)
+                .append(",\"winners\":").append(report.winners)
+                .append(",\"hits\":").append(statistics.getHits())
+                .append(",\"longest_drought\":").append(statistics.getLongestDrought())
+                .append(",\"first_winning_week\":").append(report.firstWinningWeek)
+                .append(",\"winning_draw\":[").append(numbers(report.winningDraw & game.getMainMask(), ','))
+                .append(']');
+            if (game.getBonusPicks() > 0) {
+                line.append(",\"winning_bonus\":[").append(numbers(report.winningDraw & game.getBonusMask(), ','))
+                    .append(']');
+            }
+            line.append(",\"matches\":[");
+            for (int i = 0; i <= DrawMask.NUMBERS_DRAWN; i++) {
+                line.append(i > 0 ? "," : "").append(statistics.getMatchCount(i));
+            }
+            line.append(']');
+            if (report.finished) {
+                line.append(",\"number_frequency\":[");
+                for (int i = 1; i <= game.getMainNumbers(); i++) {
+                    line.append(i > 1 ? "," : "").append(statistics.getNumberFrequency(i));
+                }
+                line.append(']');
+                if (game.getBonusPicks() > 0) {
+                    line.append(",\"bonus_frequency\":[");
+                    int first = game.getMainNumbers() + 1;
+                    for (int i = first; i <= game.getHighestNumber(); i++) {
+                        line.append(i > first ? "," : "").append(statistics.getNumberFrequency(i));
+                    }
+                    line.append(']');
+                }
+            }
+            out.println(line.append('}'));
+            out.flush();
+        }
+
+        @Override
+        void writeEstimate(MonteCarloExperiment.Estimate estimate, long elapsedMillis) {
+            out.println("{\"type\":\"" + (estimate.isFinished() || estimate.isCancelled() ? "result" : "estimate")
+                + "\",\"elapsed_ms\":" + elapsedMillis
+                + ",\"trials\":" + estimate.getTrials()
+                + ",\"mean_years\":" + value(estimate.getMean())
+                + ",\"ci_low\":" + value(estimate.getLow())
+                + ",\"ci_high\":" + value(estimate.getHigh())
+                + ",\"ci_width\":" + value(estimate.getWidth())
+                + ",\"sd_years\":" + value(estimate.getStandardDeviation())
+                + ",\"min_years\":" + value(estimate.getMin())
+                + ",\"median_years\":" + value(estimate.getMedian())
+                + ",\"p90_years\":" + value(estimate.getP90())
+                + ",\"p99_years\":" + value(estimate.getP99())
+                + ",\"max_years\":" + value(estimate.getMax()) + '}');
+            out.flush();
+        }
+
+        private static String value(double years) {
+            String text = years(years);
+            return text.isEmpty() ? "null" : text;
+        }
+    }
+}
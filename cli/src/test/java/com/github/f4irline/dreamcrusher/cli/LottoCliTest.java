@@ -0,0 +1,95 @@
+package com.github.f4irline.dreamcrusher.cli;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the command line simulator.
+ */
+public class LottoCliTest {
+    private static String run(String... args) throws InterruptedException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int status = LottoCli.run(args, new PrintStream(out), new PrintStream(err));
+        assertEquals(err.toString(), 0, status);
+        return out.toString();
+    }
+
+    private static String resultLine(String output) {
+        String[] lines = output.split("\n");
+        String last = lines[lines.length - 1];
+        assertTrue(last, last.startsWith("result") || last.startsWith("{\"type\":\"result\""));
+        return last;
+    }
+
+    @Test
+    public void singleTicket_resultDoesNotDependOnThreads() throws InterruptedException {
+        String[] fields1 = resultLine(run("--ticket", "1,2,3,4,5,6,7", "--difficulty", "5",
+            "--seed", "11", "--weeks", "100000", "--threads", "1", "--interval", "0")).split(",");
+        String[] fields4 = resultLine(run("--ticket", "1,2,3,4,5,6,7", "--difficulty", "5",
+            "--seed", "11", "--weeks", "100000", "--threads", "4", "--interval", "0")).split(",");
+
+        assertEquals("100000", fields1[2]);
+        // Everything but the elapsed time and the speed is the same.
+        for (int i = 4; i < fields1.length; i++) {
+            assertEquals(fields1[i], fields4[i]);
+        }
+    }
+
+    @Test
+    public void syndicate_writesJsonLines() throws InterruptedException {
+        String output = run("--ticket", "1,2,3,4,5,6,7", "--ticket", "8,9,10,11,12,13,14",
+            "--difficulty", "3", "--seed", "5", "--weeks", "50000", "--format", "json", "--interval", "0");
+        String result = resultLine(output);
+
+        assertTrue(result, result.contains("\"winners\":2"));
+        assertTrue(result, result.contains("\"weeks\":50000,"));
+        assertTrue(result, result.contains("\"number_frequency\":["));
+    }
+
+    @Test
+    public void syndicate_stopsOnceAllWonIfAsked() throws InterruptedException {
+        String result = resultLine(run("--ticket", "1,2,3,4,5,6,7", "--ticket", "8,9,10,11,12,13,14",
+            "--difficulty", "3", "--seed", "5", "--weeks", "50000", "--until-all-win", "--format", "json",
+            "--interval", "0"));
+
+        assertTrue(result, result.contains("\"winners\":2"));
+        assertFalse(result, result.contains("\"weeks\":50000,"));
+    }
+
+    @Test
+    public void bonusGame_reportsTheBonusNumbersApart() throws InterruptedException {
+        String result = resultLine(run("--game", "5/50+2/12", "--ticket", "1,2,3,4,5+1,2", "--difficulty", "3",
+            "--seed", "9", "--weeks", "100000", "--until-win", "--format", "json", "--interval", "0"));
+
+        assertTrue(result, result.contains("\"winning_bonus\":["));
+        assertTrue(result, result.contains("\"bonus_frequency\":["));
+        assertFalse(result, result.contains("\"first_winning_week\":-1"));
+    }
+
+    @Test
+    public void experiment_writesEstimatesOfTheYears() throws InterruptedException {
+        String output = run("--ticket", "1,2,3,4,5,6,7", "--difficulty", "4", "--seed", "3", "--trials", "1000",
+            "--sampled", "--threads", "2", "--interval", "0");
+        String[] lines = output.split("\n");
+        String[] result = resultLine(output).split(",");
+
+        assertTrue(lines[0], lines[0].startsWith("type,elapsed_ms,trials,mean_years"));
+        assertEquals("1000", result[2]);
+        assertTrue(Double.parseDouble(result[4]) < Double.parseDouble(result[5]));
+    }
+
+    @Test
+    public void invalidTicket_printsUsage() throws InterruptedException {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int status = LottoCli.run(new String[] {"--ticket", "1,2,3"}, new PrintStream(new ByteArrayOutputStream()),
+            new PrintStream(err));
+
+        assertEquals(2, status);
+        assertTrue(err.toString().contains("Usage"));
+    }
+}
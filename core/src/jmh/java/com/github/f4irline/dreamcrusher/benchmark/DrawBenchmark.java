@@ -0,0 +1,47 @@
+package com.github.f4irline.dreamcrusher.benchmark;
+
+import com.github.f4irline.dreamcrusher.LottoLogic;
+import com.github.f4irline.dreamcrusher.engine.RandomSourceType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generating the 7 random numbers of a week.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DrawBenchmark {
+
+    @State(Scope.Thread)
+    public static class Engine {
+        @Param({"REFERENCE", "SPLITMIX", "XOSHIRO"})
+        public RandomSourceType sourceType;
+
+        LottoLogic lottoLogic;
+
+        @Setup
+        public void setUp() {
+            lottoLogic = new LottoLogic(sourceType.create(42));
+        }
+    }
+
+    @Benchmark
+    public TreeSet<Integer> treeSet() {
+        return TreeSetLotto.draw();
+    }
+
+    @Benchmark
+    public long mask(Engine engine) {
+        return engine.lottoLogic.draw();
+    }
+}
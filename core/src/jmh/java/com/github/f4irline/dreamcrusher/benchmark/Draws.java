@@ -0,0 +1,49 @@
+package com.github.f4irline.dreamcrusher.benchmark;
+
+import com.github.f4irline.dreamcrusher.engine.DrawMask;
+import com.github.f4irline.dreamcrusher.engine.DrawSampler;
+import com.github.f4irline.dreamcrusher.engine.SplitMix64;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.TreeSet;
+
+/**
+ * A fixed pool of draws in both representations, so the matching benchmarks
+ * measure only the matching. The pool is cycled through week by week.
+ */
+@State(Scope.Thread)
+public class Draws {
+
+    private static final int POOL = 1024;
+
+    final long[] masks = new long[POOL];
+    // Arrays of a generic type can only be created raw.
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    final TreeSet<Integer>[] sets = new TreeSet[POOL];
+    final long ticketMask = DrawMask.fromNumbers(java.util.Arrays.asList(3, 8, 15, 16, 23, 34, 40));
+    final TreeSet<Integer> ticketSet = DrawMask.toNumbers(ticketMask);
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        DrawSampler sampler = new DrawSampler(DrawMask.MAX_NUMBER, DrawMask.NUMBERS_DRAWN);
+        SplitMix64 random = new SplitMix64(42);
+        for (int i = 0; i < POOL; i++) {
+            masks[i] = sampler.draw(random);
+            sets[i] = DrawMask.toNumbers(masks[i]);
+        }
+    }
+
+    /**
+     * @return the index of the next draw of the pool
+     */
+    int next() {
+        int index = next;
+        next = (index + 1) & (POOL - 1);
+        return index;
+    }
+}
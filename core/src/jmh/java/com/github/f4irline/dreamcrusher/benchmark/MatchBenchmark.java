@@ -0,0 +1,124 @@
+package com.github.f4irline.dreamcrusher.benchmark;
+
+import com.github.f4irline.dreamcrusher.engine.DrawMask;
+import com.github.f4irline.dreamcrusher.engine.DrawSampler;
+import com.github.f4irline.dreamcrusher.engine.SplitMix64;
+import com.github.f4irline.dreamcrusher.engine.SystemTicket;
+import com.github.f4irline.dreamcrusher.engine.TicketBook;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching a draw against one ticket, against a 12 number system entry and
+ * against a whole syndicate of tickets.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MatchBenchmark {
+
+    @State(Scope.Thread)
+    public static class Syndicate {
+        @Param({"10", "100", "1000"})
+        public int tickets;
+
+        TreeSet<Integer>[] sets;
+        long[] masks;
+        TicketBook ticketBook;
+        long week;
+
+        @Setup
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public void setUp() {
+            DrawSampler sampler = new DrawSampler(DrawMask.MAX_NUMBER, DrawMask.NUMBERS_DRAWN);
+            SplitMix64 random = new SplitMix64(7);
+            sets = new TreeSet[tickets];
+            masks = new long[tickets];
+            for (int i = 0; i < tickets; i++) {
+                masks[i] = sampler.draw(random);
+                sets[i] = DrawMask.toNumbers(masks[i]);
+            }
+            ticketBook = new TicketBook(masks, DrawMask.NUMBERS_DRAWN);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SystemEntry {
+        final long mask = DrawMask.fromNumbers(java.util.Arrays.asList(2, 5, 9, 11, 17, 20, 24, 28, 31, 33, 37, 40));
+        final SystemTicket ticket = new SystemTicket(mask);
+        final long[] rows = new long[(int) ticket.getRows()];
+
+        @Setup
+        public void setUp() {
+            int i = 0;
+            for (long row = mask; row != 0; row = (row - 1) & mask) {
+                if (Long.bitCount(row) == DrawMask.NUMBERS_DRAWN) {
+                    rows[i++] = row;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int singleTreeSet(Draws draws) {
+        return TreeSetLotto.checkNumbers(draws.sets[draws.next()], draws.ticketSet);
+    }
+
+    @Benchmark
+    public int singleMask(Draws draws) {
+        return DrawMask.matches(draws.masks[draws.next()], draws.ticketMask);
+    }
+
+    @Benchmark
+    public long systemEnumerated(Draws draws, SystemEntry system) {
+        long draw = draws.masks[draws.next()];
+        long winningRows = 0;
+        for (long row : system.rows) {
+            if (DrawMask.matches(draw, row) >= 3) {
+                winningRows++;
+            }
+        }
+        return winningRows;
+    }
+
+    @Benchmark
+    public long systemClosedForm(Draws draws, SystemEntry system) {
+        int systemMatches = DrawMask.matches(draws.masks[draws.next()], system.mask);
+        return system.ticket.getWinningRows(systemMatches, 3);
+    }
+
+    @Benchmark
+    public int multiTreeSet(Draws draws, Syndicate syndicate) {
+        TreeSet<Integer> draw = draws.sets[draws.next()];
+        int best = 0;
+        for (TreeSet<Integer> ticket : syndicate.sets) {
+            best = Math.max(best, TreeSetLotto.checkNumbers(draw, ticket));
+        }
+        return best;
+    }
+
+    @Benchmark
+    public int multiMask(Draws draws, Syndicate syndicate) {
+        long draw = draws.masks[draws.next()];
+        int best = 0;
+        for (long ticket : syndicate.masks) {
+            best = Math.max(best, DrawMask.matches(draw, ticket));
+        }
+        return best;
+    }
+
+    @Benchmark
+    public int multiTicketBook(Draws draws, Syndicate syndicate) {
+        syndicate.ticketBook.match(draws.masks[draws.next()], syndicate.week++);
+        return syndicate.ticketBook.getWeekBestMatch();
+    }
+}
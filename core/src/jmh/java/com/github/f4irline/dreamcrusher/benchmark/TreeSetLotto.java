@@ -0,0 +1,47 @@
+package com.github.f4irline.dreamcrusher.benchmark;
+
+import java.util.TreeSet;
+
+/**
+ * The original TreeSet based engine, kept as the baseline of the benchmarks.
+ */
+final class TreeSetLotto {
+
+    private TreeSetLotto() {
+    }
+
+    /**
+     * Generates 7 random numbers the way the first version of LottoLogic did.
+     *
+     * @return the random numbers
+     */
+    static TreeSet<Integer> draw() {
+        TreeSet<Integer> randomNumbers = new TreeSet<>();
+        for (int i = 0; i < 7; i++) {
+            int randomNumber = (int) Math.round(Math.random() * 39) + 1;
+            if (!randomNumbers.contains(randomNumber)) {
+                randomNumbers.add(randomNumber);
+            } else {
+                i--;
+            }
+        }
+        return randomNumbers;
+    }
+
+    /**
+     * Counts the same numbers the way the first version of LottoLogic did.
+     *
+     * @param randomNumbers the drawn numbers
+     * @param userNumbers the user selection
+     * @return amount of the same numbers
+     */
+    static int checkNumbers(TreeSet<Integer> randomNumbers, TreeSet<Integer> userNumbers) {
+        int sameNumbers = 0;
+        for (int number : userNumbers) {
+            if (randomNumbers.contains(number)) {
+                sameNumbers++;
+            }
+        }
+        return sameNumbers;
+    }
+}
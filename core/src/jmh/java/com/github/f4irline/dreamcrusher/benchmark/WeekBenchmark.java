@@ -0,0 +1,93 @@
+package com.github.f4irline.dreamcrusher.benchmark;
+
+import com.github.f4irline.dreamcrusher.LottoLogic;
+import com.github.f4irline.dreamcrusher.engine.BlockKernel;
+import com.github.f4irline.dreamcrusher.engine.CombinationBitmap;
+import com.github.f4irline.dreamcrusher.engine.DrawMask;
+import com.github.f4irline.dreamcrusher.engine.LottoStatistics;
+import com.github.f4irline.dreamcrusher.engine.RandomSourceType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One whole week of a single ticket run: draw, match and record it, like
+ * the weeks LottoService runs on its lotto thread. The block benchmarks run
+ * BLOCK weeks per call with BlockKernel and are scored per week.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WeekBenchmark {
+
+    private static final int BLOCK = 4096;
+
+    @State(Scope.Thread)
+    public static class Run {
+        @Param({"REFERENCE", "SPLITMIX", "XOSHIRO"})
+        public RandomSourceType sourceType;
+
+        LottoLogic lottoLogic;
+        LottoStatistics statistics;
+        CombinationBitmap combinations;
+        long week;
+        final long[] draws = new long[BLOCK];
+        final int[] matches = new int[BLOCK];
+
+        @Setup
+        public void setUp() {
+            lottoLogic = new LottoLogic(sourceType.create(42));
+            statistics = new LottoStatistics(DrawMask.NUMBERS_DRAWN);
+            combinations = new CombinationBitmap();
+        }
+    }
+
+    @Benchmark
+    public int treeSet(Draws draws) {
+        TreeSet<Integer> randomNumbers = TreeSetLotto.draw();
+        return TreeSetLotto.checkNumbers(randomNumbers, draws.ticketSet);
+    }
+
+    @Benchmark
+    public int mask(Draws draws, Run run) {
+        run.lottoLogic.draw();
+        return run.lottoLogic.countMatches(draws.ticketMask);
+    }
+
+    @Benchmark
+    public int maskWithStatistics(Draws draws, Run run) {
+        long draw = run.lottoLogic.draw();
+        int sameNumbers = run.lottoLogic.countMatches(draws.ticketMask);
+        run.statistics.record(draw, sameNumbers);
+        run.combinations.record(draw, run.week++);
+        return sameNumbers;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK)
+    public int maskBlock(Draws draws, Run run) {
+        run.lottoLogic.drawBlock(run.draws, BLOCK);
+        return BlockKernel.match(run.draws, BLOCK, draws.ticketMask, run.matches);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCK)
+    public int maskBlockWithStatistics(Draws draws, Run run) {
+        run.lottoLogic.drawBlock(run.draws, BLOCK);
+        int best = BlockKernel.match(run.draws, BLOCK, draws.ticketMask, run.matches);
+        run.statistics.recordBlock(run.draws, run.matches, BLOCK);
+        for (int i = 0; i < BLOCK; i++) {
+            run.combinations.record(run.draws[i], run.week++);
+        }
+        return best;
+    }
+}
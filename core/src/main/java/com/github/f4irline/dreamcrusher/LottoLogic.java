@@ -0,0 +1,190 @@
+package com.github.f4irline.dreamcrusher;
+
+import com.github.f4irline.dreamcrusher.engine.DrawMask;
+import com.github.f4irline.dreamcrusher.engine.DrawSampler;
+import com.github.f4irline.dreamcrusher.engine.GameFormat;
+import com.github.f4irline.dreamcrusher.engine.RandomSource;
+import com.github.f4irline.dreamcrusher.engine.RandomSourceType;
+
+import java.util.TreeSet;
+
+/**
+ * The lotto engine. Every instance owns its own random source and the numbers
+ * of its current week, so every run, worker thread or test should create its
+ * own instance. An instance is not thread safe and must not be shared.
+ */
+public class LottoLogic {
+
+    private static final LottoLogic SHARED = new LottoLogic(RandomSourceType.REFERENCE.create(System.nanoTime()));
+
+    private final GameFormat format;
+    private RandomSource random;
+    private long drawMask;
+
+    /**
+     * Creates an engine of the default 7/40 format.
+     *
+     * @param random the source of the random numbers, owned by this engine from now on
+     */
+    public LottoLogic(RandomSource random) {
+        this(random, GameFormat.DEFAULT);
+    }
+
+    /**
+     * @param random the source of the random numbers, owned by this engine from now on
+     * @param format the format of the draws
+     */
+    public LottoLogic(RandomSource random, GameFormat format) {
+        this.random = random;
+        this.format = format;
+    }
+
+    /**
+     * Generates the random numbers of one week, 7 of 40 in the default format.
+     *
+     * The numbers are stored in a bitmask (bit n set = number n drawn),
+     * so a week doesn't allocate anything. Every combination of the format
+     * is equally likely, see {@link DrawSampler}.
+     *
+     * @return the drawn numbers as a bitmask
+     */
+    public long draw() {
+        drawMask = format.draw(random);
+        return drawMask;
+    }
+
+    /**
+     * Generates the random numbers of a block of weeks in one call, the same
+     * numbers as count calls of draw(). The last week becomes the current one.
+     *
+     * @param draws receives the drawn numbers of every week as bitmasks
+     * @param count amount of weeks to draw, at least 1
+     */
+    public void drawBlock(long[] draws, int count) {
+        format.drawBlock(random, draws, count);
+        drawMask = draws[count - 1];
+    }
+
+    /**
+     * Checks how many numbers are same in the user selection and the
+     * random generated numbers.
+     *
+     * @param userMask the user selection as a bitmask
+     * @return amount of the same numbers
+     */
+    public int countMatches(long userMask) {
+        return DrawMask.matches(drawMask, userMask);
+    }
+
+    /**
+     * Returns the random numbers of the current week as a bitmask.
+     *
+     * @return the random numbers of the current week.
+     */
+    public long getDrawMask() {
+        return drawMask;
+    }
+
+    /**
+     * Returns the random numbers of the current week. Decodes the bitmask,
+     * so only call this when the numbers are actually needed.
+     *
+     * @return the random numbers of the current week.
+     */
+    public TreeSet<Integer> getDrawNumbers() {
+        return DrawMask.toNumbers(drawMask);
+    }
+
+    /**
+     * Replaces the source of the random numbers. Seeding the source makes
+     * the generated numbers reproducible week for week.
+     *
+     * @param source the random source
+     */
+    public void useRandomSource(RandomSource source) {
+        random = source;
+    }
+
+    /**
+     * @return the source of the random numbers
+     */
+    public RandomSource getRandomSource() {
+        return random;
+    }
+
+    /**
+     * @return the format of the draws
+     */
+    public GameFormat getGameFormat() {
+        return format;
+    }
+
+    /**
+     * Sets the source of the random numbers of the shared engine.
+     *
+     * @param source the random source
+     * @deprecated create an own LottoLogic instance instead.
+     */
+    @Deprecated
+    public static void setRandomSource(RandomSource source) {
+        SHARED.useRandomSource(source);
+    }
+
+    /**
+     * Generates 7 random numbers for the lotto with the shared engine.
+     *
+     * @deprecated use {@link #draw()} on an own LottoLogic instance.
+     */
+    @Deprecated
+    public static void generateLottoNumbers() {
+        SHARED.draw();
+    }
+
+    /**
+     * Checks how many numbers are same in the user selection and the
+     * random generated numbers of the shared engine.
+     *
+     * @param userMask the user selection as a bitmask
+     * @return amount of the same numbers
+     * @deprecated use {@link #countMatches(long)} on an own LottoLogic instance.
+     */
+    @Deprecated
+    public static int checkNumbers(long userMask) {
+        return SHARED.countMatches(userMask);
+    }
+
+    /**
+     * Checks how many numbers are same in the user selection and the
+     * random generated numbers of the shared engine.
+     *
+     * @param userNumbers the user selection
+     * @return amount of the same numbers
+     * @deprecated use {@link #countMatches(long)} on an own LottoLogic instance.
+     */
+    @Deprecated
+    public static int checkNumbers(TreeSet<Integer> userNumbers) {
+        return SHARED.countMatches(DrawMask.fromNumbers(userNumbers));
+    }
+
+    /**
+     * Returns the random numbers of the shared engine as a bitmask.
+     *
+     * @return the random numbers of the current iteration.
+     * @deprecated use {@link #getDrawMask()} on an own LottoLogic instance.
+     */
+    @Deprecated
+    public static long getRandomMask() {
+        return SHARED.getDrawMask();
+    }
+
+    /**
+     * Returns the random numbers of the shared engine.
+     *
+     * @return the random numbers of the current iteration.
+     * @deprecated use {@link #getDrawNumbers()} on an own LottoLogic instance.
+     */
+    @Deprecated
+    public static TreeSet<Integer> getRandomNumbers() {
+        return SHARED.getDrawNumbers();
+    }
+}
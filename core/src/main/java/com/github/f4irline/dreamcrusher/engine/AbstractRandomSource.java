@@ -0,0 +1,32 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+/**
+ * Base class for the generators which produce 64 random bits at a time.
+ */
+public abstract class AbstractRandomSource implements RandomSource {
+
+    /**
+     * Lemire's multiply-shift method: the high half of a 32x32 bit product is
+     * the result, and the rare low halves which would make it biased are
+     * rejected, so the result is exactly uniform without any division on the
+     * common path.
+     */
+    @Override
+    public int nextInt(int bound) {
+        long product = (nextLong() >>> 32) * bound;
+        long low = product & 0xFFFFFFFFL;
+        if (low < bound) {
+            long threshold = (0x100000000L - bound) % bound;
+            while (low < threshold) {
+                product = (nextLong() >>> 32) * bound;
+                low = product & 0xFFFFFFFFL;
+            }
+        }
+        return (int) (product >>> 32);
+    }
+
+    @Override
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+/**
+ * Matches a whole block of draws at a time instead of one week at a time.
+ *
+ * The loops only index arrays, count bits and take maximums, without any
+ * branches or calls per week, so the JIT can unroll them and vectorize them
+ * where the processor has a vector population count. The stop conditions are
+ * checked by the caller once per block, from the best match of the block, and
+ * only a block which has a win is scanned again for its first winning week.
+ * A syndicate matches its blocks with {@link TicketBook#matchBlock}, whose
+ * bit-sliced index counts many tickets at once and keeps their first wins.
+ */
+public final class BlockKernel {
+
+    private BlockKernel() {
+    }
+
+    /**
+     * Counts the same numbers of every week of the block with one ticket.
+     *
+     * @param draws the drawn numbers of the weeks as bitmasks
+     * @param count amount of weeks in the block
+     * @param ticketMask the ticket as a bitmask
+     * @param matches receives the amount of same numbers of every week
+     * @return the most same numbers in any week of the block
+     */
+    public static int match(long[] draws, int count, long ticketMask, int[] matches) {
+        int best = 0;
+        for (int i = 0; i < count; i++) {
+            int sameNumbers = Long.bitCount(draws[i] & ticketMask);
+            matches[i] = sameNumbers;
+            best = Math.max(best, sameNumbers);
+        }
+        return best;
+    }
+
+    /**
+     * Adds the weeks of the block to a histogram of the same numbers.
+     *
+     * @param matches the amount of same numbers of every week
+     * @param count amount of weeks in the block
+     * @param histogram the amount of weeks with 0..7 same numbers, added to
+     */
+    public static void accumulate(int[] matches, int count, long[] histogram) {
+        for (int i = 0; i < count; i++) {
+            histogram[matches[i]]++;
+        }
+    }
+
+    /**
+     * Finds the first winning week of a block.
+     *
+     * @param matches the amount of same numbers of every week
+     * @param count amount of weeks in the block
+     * @param requiredMatches amount of same numbers needed to win
+     * @return the index of the first week with enough same numbers, or -1 if none
+     */
+    public static int firstWin(int[] matches, int count, int requiredMatches) {
+        for (int i = 0; i < count; i++) {
+            if (matches[i] >= requiredMatches) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
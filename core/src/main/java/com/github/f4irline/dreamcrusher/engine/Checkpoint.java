@@ -0,0 +1,232 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * The state of a run at the end of a week, enough to continue it exactly
+ * where it was: the random source with its state, the week count, the
+ * statistics, the selection, the difficulty and the seed.
+ *
+ * It's stored in a fixed binary layout of BYTES bytes, ending in a CRC32 of
+ * everything before it, so a damaged file is never resumed from.
+ */
+public final class Checkpoint {
+
+    /**
+     * Size of a checkpoint, in bytes.
+     */
+    public static final int BYTES =
+            4 * 4 + 4 * 8 + RandomSource.STATE_LONGS * 8 + LottoStatistics.BYTES + 4;
+
+    private static final int MAGIC = 0x44434b50;
+    private static final int VERSION = 1;
+
+    private final RandomSourceType randomSourceType;
+    private final long seed;
+    private final long selectionMask;
+    private final RandomSource random;
+    private final LottoStatistics statistics;
+    private final long[] randomState = new long[RandomSource.STATE_LONGS];
+
+    private long weeks;
+    private double weeksPerSecond;
+
+    /**
+     * Creates the checkpoint of a run. The random source and the statistics
+     * are the live ones of the run, and they're read only when written.
+     *
+     * @param randomSourceType the type of the random source
+     * @param seed the seed of the run
+     * @param random the random source of the run
+     * @param statistics the statistics of the run
+     * @param selectionMask the user's numbers as a bitmask
+     */
+    public Checkpoint(RandomSourceType randomSourceType, long seed, RandomSource random,
+                      LottoStatistics statistics, long selectionMask) {
+        this.randomSourceType = randomSourceType;
+        this.seed = seed;
+        this.random = random;
+        this.statistics = statistics;
+        this.selectionMask = selectionMask;
+    }
+
+    /**
+     * Writes the checkpoint into a heap buffer, from its position onwards.
+     * Must be called on the thread which runs the weeks.
+     *
+     * @param buffer the buffer, with at least BYTES remaining
+     */
+    public void writeTo(ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(randomSourceType.ordinal());
+        buffer.putInt(statistics.getRequiredMatches());
+        buffer.putLong(seed);
+        buffer.putLong(selectionMask);
+        buffer.putLong(weeks);
+        buffer.putDouble(weeksPerSecond);
+        random.saveState(randomState);
+        for (long value : randomState) {
+            buffer.putLong(value);
+        }
+        statistics.writeTo(buffer);
+        buffer.putInt(checksum(buffer, start, buffer.position() - start));
+    }
+
+    /**
+     * Reads a checkpoint written with {@link #writeTo(ByteBuffer)}. The random
+     * source and the statistics are new ones, restored to the written state.
+     *
+     * @param buffer the heap buffer to read from
+     * @return the checkpoint
+     * @throws IOException if the buffer doesn't hold a valid checkpoint
+     */
+    public static Checkpoint readFrom(ByteBuffer buffer) throws IOException {
+        try {
+            int start = buffer.position();
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a checkpoint of this version");
+            }
+            int typeIndex = buffer.getInt();
+            int requiredMatches = buffer.getInt();
+            long seed = buffer.getLong();
+            long selectionMask = buffer.getLong();
+            long weeks = buffer.getLong();
+            double weeksPerSecond = buffer.getDouble();
+            long[] state = new long[RandomSource.STATE_LONGS];
+            for (int i = 0; i < state.length; i++) {
+                state[i] = buffer.getLong();
+            }
+            LottoStatistics statistics = new LottoStatistics(requiredMatches);
+            statistics.readFrom(buffer);
+            int expected = checksum(buffer, start, buffer.position() - start);
+            if (buffer.getInt() != expected) {
+                throw new IOException("Checkpoint checksum mismatch");
+            }
+            if (typeIndex < 0 || typeIndex >= RandomSourceType.values().length) {
+                throw new IOException("Unknown random source " + typeIndex);
+            }
+
+            RandomSourceType type = RandomSourceType.values()[typeIndex];
+            RandomSource random = type.create(seed);
+            random.restoreState(state);
+            Checkpoint checkpoint = new Checkpoint(type, seed, random, statistics, selectionMask);
+            checkpoint.weeks = weeks;
+            checkpoint.weeksPerSecond = weeksPerSecond;
+            return checkpoint;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated checkpoint", e);
+        }
+    }
+
+    /**
+     * Reads the checkpoint in the given file.
+     *
+     * @param file the checkpoint file
+     * @return the checkpoint, or null if there is no valid checkpoint in the file
+     */
+    public static Checkpoint read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            FileInputStream input = new FileInputStream(file);
+            ByteBuffer buffer = ByteBuffer.allocate(BYTES);
+            try {
+                FileChannel channel = input.getChannel();
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // Keep reading until the checkpoint is complete or the file ends.
+                }
+            } finally {
+                input.close();
+            }
+            buffer.flip();
+            return readFrom(buffer);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static int checksum(ByteBuffer buffer, int start, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), buffer.arrayOffset() + start, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @param weeks the weeks run so far
+     */
+    public void setWeeks(long weeks) {
+        this.weeks = weeks;
+    }
+
+    /**
+     * @param weeksPerSecond the target speed of the run
+     */
+    public void setWeeksPerSecond(double weeksPerSecond) {
+        this.weeksPerSecond = weeksPerSecond;
+    }
+
+    /**
+     * @return the type of the random source
+     */
+    public RandomSourceType getRandomSourceType() {
+        return randomSourceType;
+    }
+
+    /**
+     * @return the seed of the run
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return the user's numbers as a bitmask
+     */
+    public long getSelectionMask() {
+        return selectionMask;
+    }
+
+    /**
+     * @return amount of same numbers needed to win
+     */
+    public int getRequiredMatches() {
+        return statistics.getRequiredMatches();
+    }
+
+    /**
+     * @return the random source, in the state it had at the checkpoint
+     */
+    public RandomSource getRandomSource() {
+        return random;
+    }
+
+    /**
+     * @return the statistics of the run
+     */
+    public LottoStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return the weeks run so far
+     */
+    public long getWeeks() {
+        return weeks;
+    }
+
+    /**
+     * @return the target speed of the run
+     */
+    public double getWeeksPerSecond() {
+        return weeksPerSecond;
+    }
+}
@@ -0,0 +1,165 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes checkpoints to a file without blocking the thread which runs the weeks.
+ *
+ * The run only copies its state into a preallocated buffer, which takes a few
+ * microseconds. The buffer is written to a temporary file on a background thread,
+ * synced and renamed over the checkpoint file, so the file always holds either
+ * the previous or the new checkpoint completely. While a write is still going on,
+ * new captures are skipped instead of queued. Once the checkpoint is deleted, no
+ * capture is written until the writer is enabled again, so a run which is still
+ * winding down can't bring back the checkpoint of a run the user stopped.
+ */
+public class CheckpointWriter {
+
+    private final File file;
+    private final File temporaryFile;
+    private final ByteBuffer buffer = ByteBuffer.allocate(Checkpoint.BYTES);
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    // Guarded by this.
+    private boolean deleted;
+
+    private volatile long lastCaptureNanos;
+    private volatile long lastWriteNanos;
+    private volatile long writes;
+    private volatile long failures;
+
+    private final Runnable writeTask = new Runnable() {
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                write();
+                writes++;
+            } catch (IOException e) {
+                failures++;
+            } finally {
+                lastWriteNanos = System.nanoTime() - start;
+                writing.set(false);
+            }
+        }
+    };
+
+    /**
+     * @param file the checkpoint file
+     */
+    public CheckpointWriter(File file) {
+        this.file = file;
+        this.temporaryFile = new File(file.getPath() + ".tmp");
+    }
+
+    /**
+     * Captures the checkpoint and writes it in the background, unless the
+     * previous checkpoint is still being written or the checkpoint was deleted.
+     *
+     * @param checkpoint the checkpoint to capture
+     * @return true if the checkpoint was captured
+     */
+    public synchronized boolean capture(Checkpoint checkpoint) {
+        if (deleted || writing.get()) {
+            return false;
+        }
+        long start = System.nanoTime();
+        buffer.clear();
+        checkpoint.writeTo(buffer);
+        buffer.flip();
+        lastCaptureNanos = System.nanoTime() - start;
+
+        writing.set(true);
+        executor.execute(writeTask);
+        return true;
+    }
+
+    private void write() throws IOException {
+        FileOutputStream output = new FileOutputStream(temporaryFile);
+        try {
+            FileChannel channel = output.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } finally {
+            output.close();
+        }
+        if (!temporaryFile.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    /**
+     * Deletes the checkpoint file, after any checkpoint still being written,
+     * and skips every capture until {@link #enable()}.
+     */
+    public synchronized void delete() {
+        deleted = true;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                file.delete();
+                temporaryFile.delete();
+            }
+        });
+    }
+
+    /**
+     * Lets the captures be written again after {@link #delete()}. Call when a
+     * new run begins, after the previous run can't capture anymore.
+     */
+    public synchronized void enable() {
+        deleted = false;
+    }
+
+    /**
+     * Lets the pending writes finish, then stops the background thread.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return the checkpoint file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return how long copying the latest checkpoint into the buffer took, in nanoseconds
+     */
+    public long getLastCaptureNanos() {
+        return lastCaptureNanos;
+    }
+
+    /**
+     * @return how long writing, syncing and renaming the latest checkpoint took, in nanoseconds
+     */
+    public long getLastWriteNanos() {
+        return lastWriteNanos;
+    }
+
+    /**
+     * @return amount of checkpoints written
+     */
+    public long getWrites() {
+        return writes;
+    }
+
+    /**
+     * @return amount of checkpoints which couldn't be written
+     */
+    public long getFailures() {
+        return failures;
+    }
+}
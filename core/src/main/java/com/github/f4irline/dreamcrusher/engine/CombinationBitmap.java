@@ -0,0 +1,101 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Remembers which of the C(40, 7) draws have appeared, one bit per draw.
+ *
+ * The bits live off the heap in a direct buffer of about 2.3 MB, indexed by
+ * the colexicographic rank of the draw, so recording a week is a rank and a
+ * read-modify-write of one long. From the bits follow the amount of distinct
+ * draws, the coverage of all the draws, and the first week which repeated an
+ * earlier draw (which the birthday paradox puts at around 5400 weeks).
+ *
+ * Not thread safe: record and clear on the thread which runs the weeks.
+ */
+public class CombinationBitmap {
+
+    private final ByteBuffer bits =
+            ByteBuffer.allocateDirect(((CombinationRank.COMBINATIONS + 63) >>> 6) * 8)
+                    .order(ByteOrder.nativeOrder());
+
+    private long distinct;
+    private long firstRepeatWeek = -1;
+    private long firstRepeatDraw;
+
+    /**
+     * Records the draw of a week.
+     *
+     * @param draw the drawn numbers as a bitmask
+     * @param week the week of the draw
+     * @return true if the draw hadn't appeared before
+     */
+    public boolean record(long draw, long week) {
+        int rank = CombinationRank.rank(draw);
+        int index = (rank >>> 6) << 3;
+        long word = bits.getLong(index);
+        long bit = 1L << rank;
+        if ((word & bit) != 0) {
+            if (firstRepeatWeek < 0) {
+                firstRepeatWeek = week;
+                firstRepeatDraw = draw;
+            }
+            return false;
+        }
+        bits.putLong(index, word | bit);
+        distinct++;
+        return true;
+    }
+
+    /**
+     * Checks if the draw has appeared.
+     *
+     * @param draw the drawn numbers as a bitmask
+     * @return true if the draw has been recorded
+     */
+    public boolean contains(long draw) {
+        int rank = CombinationRank.rank(draw);
+        return (bits.getLong((rank >>> 6) << 3) & (1L << rank)) != 0;
+    }
+
+    /**
+     * Forgets every draw.
+     */
+    public void clear() {
+        for (int index = 0; index < bits.capacity(); index += 8) {
+            bits.putLong(index, 0L);
+        }
+        distinct = 0;
+        firstRepeatWeek = -1;
+        firstRepeatDraw = 0L;
+    }
+
+    /**
+     * @return amount of different draws recorded
+     */
+    public long getDistinct() {
+        return distinct;
+    }
+
+    /**
+     * @return the share of all the possible draws recorded, 0..1
+     */
+    public double getCoverage() {
+        return (double) distinct / CombinationRank.COMBINATIONS;
+    }
+
+    /**
+     * @return the first week whose draw had appeared before, -1 if none yet
+     */
+    public long getFirstRepeatWeek() {
+        return firstRepeatWeek;
+    }
+
+    /**
+     * @return the first draw which appeared twice, 0 if none yet
+     */
+    public long getFirstRepeatDraw() {
+        return firstRepeatDraw;
+    }
+}
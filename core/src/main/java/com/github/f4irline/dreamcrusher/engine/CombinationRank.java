@@ -0,0 +1,70 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+/**
+ * Numbers every possible draw with its index in colexicographic order.
+ *
+ * The draw with numbers c1 < c2 < ... < c7 (counted from 0) has the rank
+ * C(c1, 1) + C(c2, 2) + ... + C(c7, 7), so ranking takes one table lookup
+ * per number and the ranks of all the draws are exactly 0..COMBINATIONS - 1.
+ */
+public final class CombinationRank {
+
+    private static final int[][] BINOMIAL = new int[DrawMask.MAX_NUMBER + 1][DrawMask.NUMBERS_DRAWN + 1];
+
+    static {
+        for (int n = 0; n <= DrawMask.MAX_NUMBER; n++) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= Math.min(n, DrawMask.NUMBERS_DRAWN); k++) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + (k < n ? BINOMIAL[n - 1][k] : 0);
+            }
+        }
+    }
+
+    /**
+     * Amount of different draws, C(40, 7).
+     */
+    public static final int COMBINATIONS = BINOMIAL[DrawMask.MAX_NUMBER][DrawMask.NUMBERS_DRAWN];
+
+    private CombinationRank() {
+    }
+
+    /**
+     * Returns the colexicographic rank of the draw.
+     *
+     * @param draw the NUMBERS_DRAWN numbers as a bitmask
+     * @return the rank, 0..COMBINATIONS - 1
+     */
+    public static int rank(long draw) {
+        int rank = 0;
+        int k = 1;
+        long remaining = draw;
+        while (remaining != 0) {
+            rank += BINOMIAL[Long.numberOfTrailingZeros(remaining) - 1][k++];
+            remaining &= remaining - 1;
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the draw with the given colexicographic rank.
+     *
+     * @param rank the rank, 0..COMBINATIONS - 1
+     * @return the NUMBERS_DRAWN numbers as a bitmask
+     */
+    public static long unrank(int rank) {
+        if (rank < 0 || rank >= COMBINATIONS) {
+            throw new IllegalArgumentException("Rank out of range: " + rank);
+        }
+        long draw = 0L;
+        int remaining = rank;
+        int c = DrawMask.MAX_NUMBER;
+        for (int k = DrawMask.NUMBERS_DRAWN; k > 0; k--) {
+            do {
+                c--;
+            } while (BINOMIAL[c][k] > remaining);
+            remaining -= BINOMIAL[c][k];
+            draw |= DrawMask.bit(c + 1);
+        }
+        return draw;
+    }
+}
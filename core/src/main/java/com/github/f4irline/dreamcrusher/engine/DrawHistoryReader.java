@@ -0,0 +1,114 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a history written by DrawHistoryWriter through memory mapping.
+ *
+ * The file is mapped in segments of SEGMENT_WEEKS weeks, only when they're first
+ * needed, so even a history of hundreds of millions of weeks neither has to fit
+ * in the address space at once nor be read through a stream. A segment is a whole
+ * number of weeks, so no draw is split between two segments.
+ */
+public class DrawHistoryReader {
+
+    private static final int SEGMENT_SHIFT = 22;
+    private static final long SEGMENT_WEEKS = 1L << SEGMENT_SHIFT;
+    private static final int RECORD_BYTES = DrawHistoryWriter.RECORD_BYTES;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long weeks;
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Opens the history. A partly written last week is left out.
+     *
+     * @param history the history file
+     * @throws IOException if the file can't be opened
+     */
+    public DrawHistoryReader(File history) throws IOException {
+        file = new RandomAccessFile(history, "r");
+        channel = file.getChannel();
+        weeks = channel.size() / RECORD_BYTES;
+        segments = new MappedByteBuffer[(int) ((weeks + SEGMENT_WEEKS - 1) >>> SEGMENT_SHIFT)];
+    }
+
+    /**
+     * @return amount of weeks in the history
+     */
+    public long getWeeks() {
+        return weeks;
+    }
+
+    /**
+     * Returns the draw of the given week.
+     *
+     * @param week the week, from 0 to getWeeks() - 1
+     * @return the drawn numbers as a bitmask
+     * @throws IOException if the file can't be mapped
+     */
+    public long get(long week) throws IOException {
+        if (week < 0 || week >= weeks) {
+            throw new IndexOutOfBoundsException("Week " + week + " of " + weeks);
+        }
+        MappedByteBuffer segment = segment((int) (week >>> SEGMENT_SHIFT));
+        return read(segment, (int) (week & (SEGMENT_WEEKS - 1)) * RECORD_BYTES);
+    }
+
+    /**
+     * Finds the first week which drew exactly the given numbers.
+     *
+     * @param draw the numbers as a bitmask
+     * @param fromWeek the first week to look at
+     * @return the week, or -1 if the numbers were never drawn
+     * @throws IOException if the file can't be mapped
+     */
+    public long findFirst(long draw, long fromWeek) throws IOException {
+        for (long week = Math.max(fromWeek, 0); week < weeks; ) {
+            int index = (int) (week >>> SEGMENT_SHIFT);
+            MappedByteBuffer segment = segment(index);
+            long segmentStart = (long) index << SEGMENT_SHIFT;
+            int end = (int) Math.min(weeks - segmentStart, SEGMENT_WEEKS) * RECORD_BYTES;
+            for (int offset = (int) (week - segmentStart) * RECORD_BYTES; offset < end; offset += RECORD_BYTES) {
+                if (read(segment, offset) == draw) {
+                    return segmentStart + offset / RECORD_BYTES;
+                }
+            }
+            week = segmentStart + SEGMENT_WEEKS;
+        }
+        return -1;
+    }
+
+    /**
+     * Closes the file. The mapped segments are released by the garbage collector.
+     *
+     * @throws IOException if closing fails
+     */
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private static long read(MappedByteBuffer segment, int offset) {
+        long low = segment.getInt(offset) & 0xFFFFFFFFL;
+        long high = segment.get(offset + 4) & 0xFFL;
+        return (low | high << 32) << 1;
+    }
+
+    private MappedByteBuffer segment(int index) throws IOException {
+        MappedByteBuffer segment = segments[index];
+        if (segment == null) {
+            long start = (long) index * SEGMENT_WEEKS * RECORD_BYTES;
+            long size = Math.min(weeks * RECORD_BYTES - start, SEGMENT_WEEKS * RECORD_BYTES);
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            segments[index] = segment;
+        }
+        return segment;
+    }
+}
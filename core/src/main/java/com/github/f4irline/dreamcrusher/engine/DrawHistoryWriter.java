@@ -0,0 +1,143 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends every draw of a run to a history file, RECORD_BYTES bytes per week.
+ *
+ * A draw is stored as its 40 number bits, little-endian, so week n is at byte
+ * n * RECORD_BYTES and the file needs no header. The draws are packed into large
+ * blocks on the thread which runs the weeks, and full blocks are written on a
+ * background thread. If the disk falls behind by all the blocks, appending waits
+ * for a block to be written rather than dropping draws.
+ *
+ * Not thread safe: append, flush and close must be called on the same thread.
+ * Once append or flush has been interrupted, only close may be called.
+ */
+public class DrawHistoryWriter {
+
+    /**
+     * Size of one week in the history, in bytes.
+     */
+    public static final int RECORD_BYTES = 5;
+
+    private static final int BLOCK_WEEKS = 1 << 16;
+    private static final int BLOCKS = 4;
+
+    private final FileOutputStream output;
+    private final FileChannel channel;
+    private final BlockingQueue<byte[]> freeBlocks = new ArrayBlockingQueue<>(BLOCKS);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private byte[] block;
+    private int position;
+    private long weeks;
+    private volatile IOException failure;
+
+    /**
+     * Creates a new history, replacing any previous one in the file.
+     *
+     * @param file the history file
+     * @throws IOException if the file can't be created
+     */
+    public DrawHistoryWriter(File file) throws IOException {
+        output = new FileOutputStream(file);
+        channel = output.getChannel();
+        for (int i = 0; i < BLOCKS; i++) {
+            freeBlocks.add(new byte[BLOCK_WEEKS * RECORD_BYTES]);
+        }
+        block = freeBlocks.poll();
+    }
+
+    /**
+     * Appends the draw of the next week.
+     *
+     * @param draw the drawn numbers as a bitmask
+     * @throws InterruptedException if interrupted while waiting for a free block
+     */
+    public void append(long draw) throws InterruptedException {
+        long record = draw >>> 1;
+        byte[] bytes = block;
+        int i = position;
+        bytes[i] = (byte) record;
+        bytes[i + 1] = (byte) (record >>> 8);
+        bytes[i + 2] = (byte) (record >>> 16);
+        bytes[i + 3] = (byte) (record >>> 24);
+        bytes[i + 4] = (byte) (record >>> 32);
+        position = i + RECORD_BYTES;
+        weeks++;
+        if (position == bytes.length) {
+            flush();
+        }
+    }
+
+    /**
+     * Hands the draws appended so far to the background thread, and takes
+     * a free block for the following ones. The handed block is no longer
+     * this writer's even if waiting for a free one is interrupted, so it
+     * is never written twice.
+     *
+     * @throws InterruptedException if interrupted while waiting for a free block
+     */
+    public void flush() throws InterruptedException {
+        if (position == 0) {
+            return;
+        }
+        final byte[] full = block;
+        final int length = position;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ByteBuffer buffer = ByteBuffer.wrap(full, 0, length);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                } finally {
+                    freeBlocks.add(full);
+                }
+            }
+        });
+        block = null;
+        position = 0;
+        block = freeBlocks.take();
+    }
+
+    /**
+     * Writes the remaining draws and closes the file.
+     *
+     * @throws IOException if writing the history failed at any point
+     * @throws InterruptedException if interrupted while waiting for the writes
+     */
+    public void close() throws IOException, InterruptedException {
+        try {
+            flush();
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            executor.shutdownNow();
+            output.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return amount of weeks appended
+     */
+    public long getWeeks() {
+        return weeks;
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * Helpers for the primitive representation of a lotto row.
+ *
+ * A draw or a ticket is stored as a single long where bit n is set
+ * when number n is part of the row, so numbers 1..40 fit in one word
+ * and matching two rows is one AND plus a bit count.
+ */
+public final class DrawMask {
+
+    /**
+     * The biggest number in the lotto.
+     */
+    public static final int MAX_NUMBER = 40;
+
+    /**
+     * How many numbers are drawn every week.
+     */
+    public static final int NUMBERS_DRAWN = 7;
+
+    private DrawMask() {
+    }
+
+    /**
+     * Returns the bit of the given number.
+     *
+     * @param number the number between 1 and MAX_NUMBER
+     * @return the mask with only the number's bit set
+     */
+    public static long bit(int number) {
+        return 1L << number;
+    }
+
+    /**
+     * Checks if the number is part of the mask.
+     *
+     * @param mask the draw or ticket mask
+     * @param number the number to look for
+     * @return true if the number's bit is set
+     */
+    public static boolean contains(long mask, int number) {
+        return (mask & (1L << number)) != 0;
+    }
+
+    /**
+     * Counts how many numbers are same in the two masks.
+     *
+     * @param draw the drawn numbers
+     * @param ticket the user selection
+     * @return amount of the same numbers
+     */
+    public static int matches(long draw, long ticket) {
+        return Long.bitCount(draw & ticket);
+    }
+
+    /**
+     * Returns the amount of numbers in the mask.
+     *
+     * @param mask the draw or ticket mask
+     * @return amount of numbers
+     */
+    public static int size(long mask) {
+        return Long.bitCount(mask);
+    }
+
+    /**
+     * Encodes the numbers into a mask.
+     *
+     * @param numbers the numbers between 1 and MAX_NUMBER
+     * @return the mask of the numbers
+     */
+    public static long fromNumbers(Collection<Integer> numbers) {
+        long mask = 0L;
+        for (int number : numbers) {
+            if (number < 1 || number > MAX_NUMBER) {
+                throw new IllegalArgumentException("Number out of range: " + number);
+            }
+            mask |= 1L << number;
+        }
+        return mask;
+    }
+
+    /**
+     * Decodes the mask into a sorted set of numbers. Only meant for
+     * rendering and for the old TreeSet based callers, the hot paths
+     * should keep working with the mask.
+     *
+     * @param mask the draw or ticket mask
+     * @return the numbers in the mask
+     */
+    public static TreeSet<Integer> toNumbers(long mask) {
+        TreeSet<Integer> numbers = new TreeSet<>();
+        long remaining = mask;
+        while (remaining != 0) {
+            numbers.add(Long.numberOfTrailingZeros(remaining));
+            remaining &= remaining - 1;
+        }
+        return numbers;
+    }
+}
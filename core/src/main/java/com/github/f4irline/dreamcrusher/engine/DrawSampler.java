@@ -0,0 +1,55 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+/**
+ * Draws uniformly random k-of-n combinations straight into a bitmask.
+ *
+ * Uses Robert Floyd's sampling algorithm: for j = n-k+1..n pick t from 1..j
+ * and take t, or j if t was already taken. Every combination is exactly
+ * equally likely, a draw costs exactly k bounded random ints and nothing
+ * is allocated, since the mask itself is the set of the taken numbers.
+ */
+public final class DrawSampler {
+
+    private final int numbers;
+    private final int picks;
+
+    /**
+     * @param numbers the biggest number, numbers are 1..numbers
+     * @param picks how many numbers are drawn
+     */
+    public DrawSampler(int numbers, int picks) {
+        if (numbers < 1 || numbers > 63 || picks < 0 || picks > numbers) {
+            throw new IllegalArgumentException("Cannot draw " + picks + " of " + numbers);
+        }
+        this.numbers = numbers;
+        this.picks = picks;
+    }
+
+    /**
+     * Draws one combination.
+     *
+     * @param random the source of the random numbers
+     * @return the drawn numbers as a bitmask (bit n set = number n drawn)
+     */
+    public long draw(RandomSource random) {
+        long mask = 0L;
+        for (int j = numbers - picks + 1; j <= numbers; j++) {
+            long bit = 1L << (random.nextInt(j) + 1);
+            mask |= (mask & bit) == 0 ? bit : 1L << j;
+        }
+        return mask;
+    }
+
+    /**
+     * Draws a block of combinations, the same ones as count calls of draw().
+     *
+     * @param random the source of the random numbers
+     * @param draws receives the drawn numbers of every week as bitmasks
+     * @param count amount of combinations to draw
+     */
+    public void drawBlock(RandomSource random, long[] draws, int count) {
+        for (int i = 0; i < count; i++) {
+            draws[i] = draw(random);
+        }
+    }
+}
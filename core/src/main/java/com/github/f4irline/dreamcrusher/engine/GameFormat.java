@@ -0,0 +1,323 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import java.util.Collection;
+
+/**
+ * The rules of a lotto game: k main numbers drawn out of 1..n, optionally
+ * followed by k2 bonus numbers drawn out of their own pool 1..m.
+ *
+ * Both pools share one bitmask: main number i is bit i and bonus number j is
+ * bit n + j, so a draw is still a single long and the same numbers of a ticket
+ * are still one AND plus a bit count, whatever the format. Everything which
+ * depends on the format (the samplers, the masks of the pools and the
+ * hypergeometric tables) is computed once here, so the weeks don't branch on
+ * the format. A week counts the main and the bonus matches together.
+ */
+public final class GameFormat {
+
+    /**
+     * 7 numbers out of 40, the original game.
+     */
+    public static final GameFormat LOTTO = new GameFormat("7/40", DrawMask.MAX_NUMBER, DrawMask.NUMBERS_DRAWN, 0, 0);
+
+    /**
+     * 6 numbers out of 49.
+     */
+    public static final GameFormat SIX_OF_49 = new GameFormat("6/49", 49, 6, 0, 0);
+
+    /**
+     * 5 numbers out of 50 and 2 bonus numbers out of 12.
+     */
+    public static final GameFormat EUROJACKPOT = new GameFormat("5/50 + 2/12", 50, 5, 12, 2);
+
+    /**
+     * 5 numbers out of 39 and a bonus ball out of 14. Powerball itself
+     * (5/69 + 1/26) would need 95 bits, so it doesn't fit in a mask.
+     */
+    public static final GameFormat THUNDERBALL = new GameFormat("5/39 + 1/14", 39, 5, 14, 1);
+
+    /**
+     * The format of a run when none is given.
+     */
+    public static final GameFormat DEFAULT = LOTTO;
+
+    private static final GameFormat[] PRESETS = {LOTTO, SIX_OF_49, EUROJACKPOT, THUNDERBALL};
+
+    private final String name;
+    private final int mainNumbers;
+    private final int mainPicks;
+    private final int bonusNumbers;
+    private final int bonusPicks;
+
+    private final long mainMask;
+    private final long bonusMask;
+    private final DrawSampler mainSampler;
+    private final DrawSampler bonusSampler;
+    private final long combinations;
+    // matchProbabilities[i][j]: chance of i same main and j same bonus numbers with a full ticket.
+    private final double[][] matchProbabilities;
+    // totalProbabilities[t]: chance of t same numbers in total with a full ticket.
+    private final double[] totalProbabilities = new double[DrawMask.NUMBERS_DRAWN + 1];
+
+    /**
+     * @param name the name of the format
+     * @param mainNumbers the biggest main number
+     * @param mainPicks how many main numbers are drawn
+     * @param bonusNumbers the biggest bonus number, 0 if there are no bonus numbers
+     * @param bonusPicks how many bonus numbers are drawn
+     */
+    public GameFormat(String name, int mainNumbers, int mainPicks, int bonusNumbers, int bonusPicks) {
+        if (mainPicks < 1 || mainPicks > mainNumbers || bonusPicks < 0 || bonusPicks > bonusNumbers
+            || (bonusNumbers > 0 && bonusPicks == 0)) {
+            throw new IllegalArgumentException("Invalid format: " + name);
+        }
+        if (mainPicks + bonusPicks > DrawMask.NUMBERS_DRAWN || mainNumbers + bonusNumbers >= Long.SIZE) {
+            throw new IllegalArgumentException("At most " + DrawMask.NUMBERS_DRAWN + " of "
+                + (Long.SIZE - 1) + " numbers can be drawn: " + name);
+        }
+        this.name = name;
+        this.mainNumbers = mainNumbers;
+        this.mainPicks = mainPicks;
+        this.bonusNumbers = bonusNumbers;
+        this.bonusPicks = bonusPicks;
+
+        mainMask = numbersMask(mainNumbers);
+        bonusMask = numbersMask(bonusNumbers) << mainNumbers;
+        mainSampler = new DrawSampler(mainNumbers, mainPicks);
+        // Without bonus numbers this draws nothing and takes no random numbers.
+        bonusSampler = new DrawSampler(Math.max(bonusNumbers, 1), bonusPicks);
+
+        double mainCombinations = WaitingTime.binomial(mainNumbers, mainPicks);
+        double bonusCombinations = WaitingTime.binomial(bonusNumbers, bonusPicks);
+        combinations = Math.round(mainCombinations * bonusCombinations);
+        matchProbabilities = new double[mainPicks + 1][bonusPicks + 1];
+        for (int i = 0; i <= mainPicks; i++) {
+            double main = WaitingTime.binomial(mainPicks, i)
+                * WaitingTime.binomial(mainNumbers - mainPicks, mainPicks - i) / mainCombinations;
+            for (int j = 0; j <= bonusPicks; j++) {
+                double bonus = WaitingTime.binomial(bonusPicks, j)
+                    * WaitingTime.binomial(bonusNumbers - bonusPicks, bonusPicks - j) / bonusCombinations;
+                matchProbabilities[i][j] = main * bonus;
+                totalProbabilities[i + j] += main * bonus;
+            }
+        }
+    }
+
+    /**
+     * Returns the formats which the app offers.
+     *
+     * @return the preset formats, the default one first
+     */
+    public static GameFormat[] presets() {
+        return PRESETS.clone();
+    }
+
+    /**
+     * Finds a preset format by its name.
+     *
+     * @param name the name of the format, e.g. "6/49"
+     * @return the format
+     * @throws IllegalArgumentException if there is no such preset
+     */
+    public static GameFormat forName(String name) {
+        String compact = name.replace(" ", "");
+        for (GameFormat format : PRESETS) {
+            if (format.name.replace(" ", "").equals(compact)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown game format: " + name);
+    }
+
+    /**
+     * Draws the numbers of one week.
+     *
+     * @param random the source of the random numbers
+     * @return the drawn main and bonus numbers as a bitmask
+     */
+    public long draw(RandomSource random) {
+        return mainSampler.draw(random) | bonusSampler.draw(random) << mainNumbers;
+    }
+
+    /**
+     * Draws a block of weeks, the same ones as count calls of draw().
+     *
+     * @param random the source of the random numbers
+     * @param draws receives the drawn numbers of every week as bitmasks
+     * @param count amount of weeks to draw
+     */
+    public void drawBlock(RandomSource random, long[] draws, int count) {
+        if (bonusPicks == 0) {
+            mainSampler.drawBlock(random, draws, count);
+            return;
+        }
+        // The main and the bonus numbers of a week take turns on the random source.
+        for (int i = 0; i < count; i++) {
+            draws[i] = draw(random);
+        }
+    }
+
+    /**
+     * Encodes the numbers into a mask.
+     *
+     * @param bits the bits of the numbers, 1..getHighestNumber(), bonus number j is mainNumbers + j
+     * @return the mask of the numbers
+     */
+    public long toMask(Collection<Integer> bits) {
+        long mask = 0L;
+        for (int bit : bits) {
+            if (bit < 1 || bit > getHighestNumber()) {
+                throw new IllegalArgumentException("Number out of range: " + bit);
+            }
+            mask |= 1L << bit;
+        }
+        return mask;
+    }
+
+    /**
+     * Checks that the ticket has exactly the main and bonus numbers of one row.
+     *
+     * @param ticketMask the ticket as a bitmask
+     * @return true if the ticket can be played as it is
+     */
+    public boolean isValidTicket(long ticketMask) {
+        return (ticketMask & ~(mainMask | bonusMask)) == 0
+            && Long.bitCount(ticketMask & mainMask) == mainPicks
+            && Long.bitCount(ticketMask & bonusMask) == bonusPicks;
+    }
+
+    /**
+     * Returns the number shown for a bit of the mask.
+     *
+     * @param bit the bit, 1..getHighestNumber()
+     * @return the main number, or the bonus number if the bit is a bonus one
+     */
+    public int getNumber(int bit) {
+        return bit > mainNumbers ? bit - mainNumbers : bit;
+    }
+
+    /**
+     * @param bit the bit, 1..getHighestNumber()
+     * @return true if the bit is a bonus number
+     */
+    public boolean isBonus(int bit) {
+        return bit > mainNumbers;
+    }
+
+    /**
+     * @return the name of the format, e.g. "5/50 + 2/12"
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the biggest main number
+     */
+    public int getMainNumbers() {
+        return mainNumbers;
+    }
+
+    /**
+     * @return how many main numbers are drawn
+     */
+    public int getMainPicks() {
+        return mainPicks;
+    }
+
+    /**
+     * @return the biggest bonus number, 0 if there are no bonus numbers
+     */
+    public int getBonusNumbers() {
+        return bonusNumbers;
+    }
+
+    /**
+     * @return how many bonus numbers are drawn
+     */
+    public int getBonusPicks() {
+        return bonusPicks;
+    }
+
+    /**
+     * @return how many numbers are drawn in total, which is also the most same numbers
+     */
+    public int getPicks() {
+        return mainPicks + bonusPicks;
+    }
+
+    /**
+     * @return the highest bit a draw can have
+     */
+    public int getHighestNumber() {
+        return mainNumbers + bonusNumbers;
+    }
+
+    /**
+     * @return the bits of the main numbers
+     */
+    public long getMainMask() {
+        return mainMask;
+    }
+
+    /**
+     * @return the bits of the bonus numbers, 0 if there are none
+     */
+    public long getBonusMask() {
+        return bonusMask;
+    }
+
+    /**
+     * @return amount of different draws, C(n, k) * C(m, k2)
+     */
+    public long getCombinations() {
+        return combinations;
+    }
+
+    /**
+     * Returns the chance of a week with the given same numbers, for a ticket
+     * with exactly the main and bonus numbers of one row.
+     *
+     * @param mainMatches amount of same main numbers
+     * @param bonusMatches amount of same bonus numbers
+     * @return the probability
+     */
+    public double getMatchProbability(int mainMatches, int bonusMatches) {
+        return matchProbabilities[mainMatches][bonusMatches];
+    }
+
+    /**
+     * Returns the chance of a week with the given amount of same numbers in
+     * total, for a ticket with exactly the main and bonus numbers of one row.
+     *
+     * @param matches amount of same numbers, 0..7
+     * @return the probability
+     */
+    public double getTotalMatchProbability(int matches) {
+        return totalProbabilities[matches];
+    }
+
+    /**
+     * Returns the chance of a week with at least the required amount of same
+     * numbers, for a ticket with exactly the main and bonus numbers of one row.
+     *
+     * @param requiredMatches amount of same numbers needed to win
+     * @return the probability of a winning week
+     */
+    public double getWinProbability(int requiredMatches) {
+        double win = 0;
+        for (int m = Math.max(requiredMatches, 0); m < totalProbabilities.length; m++) {
+            win += totalProbabilities[m];
+        }
+        return win;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private static long numbersMask(int numbers) {
+        return ((1L << numbers) - 1) << 1;
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+/**
+ * The reference source, the algorithm of java.util.Random like Math.random().
+ *
+ * It's the same 48-bit linear congruential generator as java.util.Random, so it
+ * draws exactly what the java.util.Random based engine would have drawn with the
+ * same seed. It's implemented here rather than wrapped, so that the seed isn't
+ * updated atomically on every call and the state can be saved and restored.
+ */
+public final class JdkRandomSource implements RandomSource {
+
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private long seed;
+
+    /**
+     * @param seed the seed, as given to java.util.Random
+     */
+    public JdkRandomSource(long seed) {
+        this.seed = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    private int next(int bits) {
+        seed = (seed * MULTIPLIER + ADDEND) & MASK;
+        return (int) (seed >>> (48 - bits));
+    }
+
+    @Override
+    public long nextLong() {
+        return ((long) next(32) << 32) + next(32);
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        if ((bound & -bound) == bound) {
+            return (int) ((bound * (long) next(31)) >> 31);
+        }
+        int bits;
+        int value;
+        do {
+            bits = next(31);
+            value = bits % bound;
+        } while (bits - value + (bound - 1) < 0);
+        return value;
+    }
+
+    @Override
+    public double nextDouble() {
+        return (((long) next(26) << 27) + next(27)) * DOUBLE_UNIT;
+    }
+
+    @Override
+    public void saveState(long[] state) {
+        state[0] = seed;
+    }
+
+    @Override
+    public void restoreState(long[] state) {
+        seed = state[0];
+    }
+}
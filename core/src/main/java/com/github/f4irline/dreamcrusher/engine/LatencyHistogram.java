@@ -0,0 +1,121 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations with one bucket per power of two nanoseconds.
+ *
+ * Bucket b counts the durations of [2^(b-1), 2^b) nanoseconds, bucket 0 the
+ * zero ones, so recording is a leading zero count and one increment, and
+ * nothing is allocated. There may only be one recording thread, but any thread
+ * can read: the counters are written with lazySet, which is as cheap as a
+ * plain store on the recording side and still gets seen by the readers.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Amount of buckets, enough for any long duration.
+     */
+    public static final int BUCKETS = Long.SIZE;
+
+    // The buckets, then the total of the recorded nanoseconds.
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS + 1);
+
+    /**
+     * Records one duration. Only call from the recording thread.
+     *
+     * @param nanos the duration in nanoseconds, negative ones count as 0
+     */
+    public void record(long nanos) {
+        long duration = Math.max(nanos, 0);
+        int bucket = Math.min(BUCKETS - Long.numberOfLeadingZeros(duration), BUCKETS - 1);
+        counts.lazySet(bucket, counts.get(bucket) + 1);
+        counts.lazySet(BUCKETS, counts.get(BUCKETS) + duration);
+    }
+
+    /**
+     * @param bucket the bucket, 0..BUCKETS-1
+     * @return amount of durations in the bucket
+     */
+    public long getBucketCount(int bucket) {
+        return counts.get(bucket);
+    }
+
+    /**
+     * @return amount of durations recorded
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return the mean duration in nanoseconds, 0 if nothing was recorded
+     */
+    public double getMeanNanos() {
+        long count = getCount();
+        return count > 0 ? (double) counts.get(BUCKETS) / count : 0;
+    }
+
+    /**
+     * Returns an upper bound of the given quantile: the end of the bucket
+     * which holds it, so at most twice the real value.
+     *
+     * @param quantile the quantile, 0..1
+     * @return the upper bound in nanoseconds, 0 if nothing was recorded
+     */
+    public long getQuantileNanos(double quantile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return bucketEnd(i);
+            }
+        }
+        return bucketEnd(BUCKETS - 1);
+    }
+
+    /**
+     * @return an upper bound of the longest duration, 0 if nothing was recorded
+     */
+    public long getMaxNanos() {
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (counts.get(i) > 0) {
+                return bucketEnd(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Clears the histogram. Only call from the recording thread.
+     */
+    public void reset() {
+        for (int i = 0; i <= BUCKETS; i++) {
+            counts.lazySet(i, 0);
+        }
+    }
+
+    /**
+     * Copies every counter of this into the target.
+     *
+     * @param target the histogram to overwrite
+     */
+    public void copyTo(LatencyHistogram target) {
+        for (int i = 0; i <= BUCKETS; i++) {
+            target.counts.set(i, counts.get(i));
+        }
+    }
+
+    private static long bucketEnd(int bucket) {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+}
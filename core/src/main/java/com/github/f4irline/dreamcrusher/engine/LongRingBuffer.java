@@ -0,0 +1,166 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded queue of longs between exactly one producer thread and one
+ * consumer thread, without locks and without allocating anything per value.
+ *
+ * The producer owns the tail and the consumer the head. Each side publishes
+ * its position with lazySet, which is as cheap as a plain store, and keeps a
+ * cached copy of the other side's position, so it only reads the contended
+ * position again when the cached one runs out of room or values. The
+ * two positions are PAD longs apart and away from the ends of their array,
+ * so the producer and the consumer never write to the same cache line.
+ */
+public final class LongRingBuffer {
+
+    /**
+     * Longs between the positions, one cache line of 64 bytes.
+     */
+    private static final int PAD = 8;
+
+    // Consumer side: the head, then the amount of polls which found the queue empty.
+    private static final int HEAD = PAD;
+    private static final int EMPTY_POLLS = HEAD + 1;
+    // Producer side: the tail, then the amount of offers which found the queue full.
+    private static final int TAIL = 2 * PAD;
+    private static final int FULL_OFFERS = TAIL + 1;
+
+    private final long[] buffer;
+    private final int mask;
+    private final AtomicLongArray positions = new AtomicLongArray(3 * PAD);
+    // The cached positions, each only touched by its own side.
+    private final long[] cached = new long[3 * PAD];
+
+    /**
+     * @param capacity the most values in the queue, a power of two
+     */
+    public LongRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of two: " + capacity);
+        }
+        buffer = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds a value, unless the queue is full. Only call from the producer thread.
+     *
+     * @param value the value
+     * @return false if the queue is full
+     */
+    public boolean offer(long value) {
+        long tail = positions.get(TAIL);
+        if (!hasRoom(tail, 1)) {
+            return false;
+        }
+        buffer[(int) tail & mask] = value;
+        positions.lazySet(TAIL, tail + 1);
+        return true;
+    }
+
+    /**
+     * Adds two values which the consumer sees together or not at all, unless
+     * the queue doesn't have room for both. Only call from the producer thread.
+     *
+     * @param first the first value
+     * @param second the second value
+     * @return false if the queue doesn't have room for both
+     */
+    public boolean offer(long first, long second) {
+        long tail = positions.get(TAIL);
+        if (!hasRoom(tail, 2)) {
+            return false;
+        }
+        buffer[(int) tail & mask] = first;
+        buffer[(int) (tail + 1) & mask] = second;
+        positions.lazySet(TAIL, tail + 2);
+        return true;
+    }
+
+    private boolean hasRoom(long tail, int values) {
+        if (tail + values - cached[HEAD] <= buffer.length) {
+            return true;
+        }
+        cached[HEAD] = positions.get(HEAD);
+        if (tail + values - cached[HEAD] <= buffer.length) {
+            return true;
+        }
+        positions.lazySet(FULL_OFFERS, positions.get(FULL_OFFERS) + 1);
+        return false;
+    }
+
+    /**
+     * Moves the oldest values to the array. Only call from the consumer thread.
+     *
+     * @param values the array to move the values to, from index 0
+     * @param max the most values to move
+     * @return amount of values moved, 0 if the queue is empty
+     */
+    public int drainTo(long[] values, int max) {
+        long head = positions.get(HEAD);
+        long available = cached[TAIL] - head;
+        if (available < max) {
+            cached[TAIL] = positions.get(TAIL);
+            available = cached[TAIL] - head;
+            if (available <= 0) {
+                positions.lazySet(EMPTY_POLLS, positions.get(EMPTY_POLLS) + 1);
+                return 0;
+            }
+        }
+        int count = (int) Math.min(available, max);
+        for (int i = 0; i < count; i++) {
+            values[i] = buffer[(int) (head + i) & mask];
+        }
+        positions.lazySet(HEAD, head + count);
+        return count;
+    }
+
+    /**
+     * @return the most values in the queue
+     */
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Returns the amount of values in the queue. Any thread can call this, the
+     * value may be out of date by the time it is returned.
+     *
+     * @return the occupancy of the queue
+     */
+    public int size() {
+        long head = positions.get(HEAD);
+        long tail = positions.get(TAIL);
+        return (int) Math.max(0, Math.min(tail - head, buffer.length));
+    }
+
+    /**
+     * @return amount of values ever added
+     */
+    public long getProduced() {
+        return positions.get(TAIL);
+    }
+
+    /**
+     * @return amount of values ever taken out
+     */
+    public long getConsumed() {
+        return positions.get(HEAD);
+    }
+
+    /**
+     * @return how many times the producer found the queue full
+     */
+    public long getFullOffers() {
+        return positions.get(FULL_OFFERS);
+    }
+
+    /**
+     * @return how many times the consumer found the queue empty
+     */
+    public long getEmptyPolls() {
+        return positions.get(EMPTY_POLLS);
+    }
+}
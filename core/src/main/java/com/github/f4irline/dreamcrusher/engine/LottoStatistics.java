@@ -0,0 +1,316 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming statistics of a run, updated every week with primitive counters only.
+ *
+ * Keeps the 0..7 match histogram, how often every number has been drawn, how
+ * often every pair of numbers has been drawn together and the droughts between
+ * hits, where a hit is a week with at least the required amount of same numbers.
+ * Statistics of consecutive parts of a run can be merged, which lets parallel
+ * workers keep their own. The counters are sized by the highest number of the
+ * game format, bonus numbers are counted by their bit like the main numbers.
+ */
+public class LottoStatistics {
+
+    /**
+     * Size of the statistics of the default format written by {@link #writeTo(ByteBuffer)}, in bytes.
+     */
+    public static final int BYTES = bytes(DrawMask.MAX_NUMBER);
+
+    private final int requiredMatches;
+    private final int numbers;
+    private final long[] histogram = new long[DrawMask.NUMBERS_DRAWN + 1];
+    private final long[] numberFrequency;
+    private final long[] pairCounts;
+
+    private long weeks;
+    private long hits;
+    private long weeksBeforeFirstHit;
+    private long currentDrought;
+    private long longestDrought;
+
+    /**
+     * @param requiredMatches amount of same numbers which counts as a hit
+     */
+    public LottoStatistics(int requiredMatches) {
+        this(requiredMatches, DrawMask.MAX_NUMBER);
+    }
+
+    /**
+     * @param requiredMatches amount of same numbers which counts as a hit
+     * @param format the format of the recorded draws
+     */
+    public LottoStatistics(int requiredMatches, GameFormat format) {
+        this(requiredMatches, format.getHighestNumber());
+    }
+
+    private LottoStatistics(int requiredMatches, int numbers) {
+        this.requiredMatches = requiredMatches;
+        this.numbers = numbers;
+        numberFrequency = new long[numbers + 1];
+        pairCounts = new long[numbers * numbers];
+    }
+
+    private static int bytes(int numbers) {
+        return (DrawMask.NUMBERS_DRAWN + 1 + numbers + 1 + numbers * numbers + 5) * 8;
+    }
+
+    /**
+     * Records one week.
+     *
+     * @param draw the drawn numbers as a bitmask
+     * @param matches amount of same numbers in the week
+     */
+    public void record(long draw, int matches) {
+        histogram[matches]++;
+        recordWeek(draw, matches);
+    }
+
+    /**
+     * Records a block of weeks, like calling record() for every week.
+     *
+     * @param draws the drawn numbers of the weeks as bitmasks
+     * @param matches amount of same numbers of every week
+     * @param count amount of weeks in the block
+     */
+    public void recordBlock(long[] draws, int[] matches, int count) {
+        BlockKernel.accumulate(matches, count, histogram);
+        for (int i = 0; i < count; i++) {
+            recordWeek(draws[i], matches[i]);
+        }
+    }
+
+    /**
+     * Records everything of one week but the match histogram.
+     */
+    private void recordWeek(long draw, int matches) {
+        weeks++;
+
+        long remaining = draw;
+        while (remaining != 0) {
+            int first = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            numberFrequency[first]++;
+
+            int row = (first - 1) * numbers - 1;
+            long others = remaining;
+            while (others != 0) {
+                pairCounts[row + Long.numberOfTrailingZeros(others)]++;
+                others &= others - 1;
+            }
+        }
+
+        if (matches >= requiredMatches) {
+            if (hits == 0) {
+                weeksBeforeFirstHit = currentDrought;
+            }
+            longestDrought = Math.max(longestDrought, currentDrought);
+            currentDrought = 0;
+            hits++;
+        } else {
+            currentDrought++;
+        }
+    }
+
+    /**
+     * Adds the statistics of the weeks which came right after the weeks of this one.
+     *
+     * @param next the statistics of the following weeks
+     */
+    public void merge(LottoStatistics next) {
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] += next.histogram[i];
+        }
+        for (int i = 0; i < numberFrequency.length; i++) {
+            numberFrequency[i] += next.numberFrequency[i];
+        }
+        for (int i = 0; i < pairCounts.length; i++) {
+            pairCounts[i] += next.pairCounts[i];
+        }
+
+        if (next.hits == 0) {
+            currentDrought += next.currentDrought;
+        } else {
+            long bridged = currentDrought + next.weeksBeforeFirstHit;
+            if (hits == 0) {
+                weeksBeforeFirstHit = bridged;
+            }
+            longestDrought = Math.max(Math.max(longestDrought, next.longestDrought), bridged);
+            currentDrought = next.currentDrought;
+        }
+        hits += next.hits;
+        weeks += next.weeks;
+    }
+
+    /**
+     * Clears all the counters.
+     */
+    public void reset() {
+        java.util.Arrays.fill(histogram, 0);
+        java.util.Arrays.fill(numberFrequency, 0);
+        java.util.Arrays.fill(pairCounts, 0);
+        weeks = 0;
+        hits = 0;
+        weeksBeforeFirstHit = 0;
+        currentDrought = 0;
+        longestDrought = 0;
+    }
+
+    /**
+     * Copies every counter of this into the target.
+     *
+     * @param target the statistics to overwrite
+     */
+    public void copyTo(LottoStatistics target) {
+        System.arraycopy(histogram, 0, target.histogram, 0, histogram.length);
+        System.arraycopy(numberFrequency, 0, target.numberFrequency, 0, numberFrequency.length);
+        System.arraycopy(pairCounts, 0, target.pairCounts, 0, pairCounts.length);
+        target.weeks = weeks;
+        target.hits = hits;
+        target.weeksBeforeFirstHit = weeksBeforeFirstHit;
+        target.currentDrought = currentDrought;
+        target.longestDrought = longestDrought;
+    }
+
+    /**
+     * @return size of the statistics written by {@link #writeTo(ByteBuffer)}, in bytes
+     */
+    public int getBytes() {
+        return bytes(numbers);
+    }
+
+    /**
+     * Writes every counter into the buffer, getBytes() bytes in a fixed layout.
+     *
+     * @param buffer the buffer to write to
+     */
+    public void writeTo(ByteBuffer buffer) {
+        putAll(buffer, histogram);
+        putAll(buffer, numberFrequency);
+        putAll(buffer, pairCounts);
+        buffer.putLong(weeks);
+        buffer.putLong(hits);
+        buffer.putLong(weeksBeforeFirstHit);
+        buffer.putLong(currentDrought);
+        buffer.putLong(longestDrought);
+    }
+
+    /**
+     * Reads every counter from a buffer written with {@link #writeTo(ByteBuffer)}.
+     *
+     * @param buffer the buffer to read from
+     */
+    public void readFrom(ByteBuffer buffer) {
+        getAll(buffer, histogram);
+        getAll(buffer, numberFrequency);
+        getAll(buffer, pairCounts);
+        weeks = buffer.getLong();
+        hits = buffer.getLong();
+        weeksBeforeFirstHit = buffer.getLong();
+        currentDrought = buffer.getLong();
+        longestDrought = buffer.getLong();
+    }
+
+    private static void putAll(ByteBuffer buffer, long[] values) {
+        for (long value : values) {
+            buffer.putLong(value);
+        }
+    }
+
+    private static void getAll(ByteBuffer buffer, long[] values) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getLong();
+        }
+    }
+
+    /**
+     * Returns a copy, which the recording thread won't touch anymore.
+     *
+     * @return the snapshot of the statistics
+     */
+    public LottoStatistics snapshot() {
+        LottoStatistics snapshot = new LottoStatistics(requiredMatches, numbers);
+        copyTo(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * @return amount of same numbers which counts as a hit
+     */
+    public int getRequiredMatches() {
+        return requiredMatches;
+    }
+
+    /**
+     * @return the highest number counted, 40 in the default format
+     */
+    public int getHighestNumber() {
+        return numbers;
+    }
+
+    /**
+     * @return amount of weeks recorded
+     */
+    public long getWeeks() {
+        return weeks;
+    }
+
+    /**
+     * @param matches amount of same numbers, 0..7
+     * @return amount of weeks with exactly that many same numbers
+     */
+    public long getMatchCount(int matches) {
+        return histogram[matches];
+    }
+
+    /**
+     * @return a copy of the 0..7 match histogram
+     */
+    public long[] getHistogram() {
+        return histogram.clone();
+    }
+
+    /**
+     * @param number the number, 1..getHighestNumber()
+     * @return how many times the number has been drawn
+     */
+    public long getNumberFrequency(int number) {
+        return numberFrequency[number];
+    }
+
+    /**
+     * @param first a number, 1..getHighestNumber()
+     * @param second another number, 1..getHighestNumber()
+     * @return how many times the two numbers have been drawn in the same week
+     */
+    public long getPairCount(int first, int second) {
+        int low = Math.min(first, second);
+        int high = Math.max(first, second);
+        return low == high ? numberFrequency[low] : pairCounts[(low - 1) * numbers + high - 1];
+    }
+
+    /**
+     * @return amount of weeks with at least the required amount of same numbers
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the longest streak of weeks without a hit, including the ongoing one.
+     *
+     * @return the longest drought in weeks
+     */
+    public long getLongestDrought() {
+        return Math.max(longestDrought, currentDrought);
+    }
+
+    /**
+     * @return amount of weeks since the latest hit
+     */
+    public long getCurrentDrought() {
+        return currentDrought;
+    }
+}
@@ -0,0 +1,348 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import com.github.f4irline.dreamcrusher.LottoLogic;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates the distribution of the years it takes to win, from many
+ * independent trials run on several worker threads at once.
+ *
+ * Every trial plays the lotto from scratch until the first win, with its own
+ * split stream of the root seed. The finished trials are folded into running
+ * statistics and P2 quantile sketches, so the memory use doesn't depend on the
+ * amount of trials. The experiment stops by itself once the 95 % confidence
+ * interval of the mean is at most the requested width, or after maxTrials
+ * trials. Every trial only depends on the seed and its index, but the trials
+ * are folded in the order they finish, so the quantile estimates and the trial
+ * where the experiment stops can change slightly from run to run.
+ */
+public class MonteCarloExperiment {
+
+    /**
+     * How many weeks are in a year.
+     */
+    public static final double WEEKS_PER_YEAR = 52;
+
+    /**
+     * The standard normal quantile of a 95 % two-sided confidence interval.
+     */
+    public static final double Z_95 = 1.959963984540054;
+
+    /**
+     * The confidence interval isn't trusted before this many trials.
+     */
+    public static final int MIN_TRIALS = 30;
+
+    /**
+     * A running trial checks for the stop once per this many weeks (must be 2^n - 1).
+     */
+    private static final long STOP_CHECK_MASK = 65535;
+
+    private final long ticketMask;
+    private final int requiredMatches;
+    private final GameFormat format;
+    private final long seed;
+    private final int workers;
+    private final long maxTrials;
+    private final double targetWidth;
+    private final WaitingTime waitingTime;
+
+    private final Object lock = new Object();
+    // Guarded by lock, in years.
+    private final RunningStatistics years = new RunningStatistics();
+    private final P2Quantile median = new P2Quantile(0.5);
+    private final P2Quantile p90 = new P2Quantile(0.9);
+    private final P2Quantile p99 = new P2Quantile(0.99);
+    private long nextTrial;
+
+    private volatile boolean finished;
+    private volatile boolean cancelled;
+
+    private ExecutorService pool;
+    private CountDownLatch workersDone;
+
+    /**
+     * @param ticketMask the user selection as a bitmask
+     * @param requiredMatches amount of same numbers needed to win
+     * @param format the format of the draws
+     * @param seed the root seed of the random numbers
+     * @param workers amount of worker threads
+     * @param maxTrials the most trials to run
+     * @param targetWidth the width of the confidence interval of the mean to stop at,
+     *                    in years, 0 to always run maxTrials trials
+     * @param sampled true to sample the winning week of every trial directly with
+     *                {@link WaitingTime} instead of playing every week, only in the default format
+     */
+    public MonteCarloExperiment(long ticketMask, int requiredMatches, GameFormat format, long seed, int workers,
+                                long maxTrials, double targetWidth, boolean sampled) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("At least one worker is needed: " + workers);
+        }
+        if (maxTrials < 1) {
+            throw new IllegalArgumentException("At least one trial is needed: " + maxTrials);
+        }
+        if (sampled && format != GameFormat.DEFAULT) {
+            throw new IllegalArgumentException("Only " + GameFormat.DEFAULT + " can be sampled: " + format);
+        }
+        this.ticketMask = ticketMask;
+        this.requiredMatches = requiredMatches;
+        this.format = format;
+        this.seed = seed;
+        this.workers = workers;
+        this.maxTrials = maxTrials;
+        this.targetWidth = targetWidth;
+        waitingTime = sampled ? new WaitingTime(Long.bitCount(ticketMask), requiredMatches) : null;
+    }
+
+    /**
+     * Starts the worker threads. Can only be called once.
+     */
+    public void start() {
+        if (pool != null) {
+            throw new IllegalStateException("Experiment already started");
+        }
+        pool = Executors.newFixedThreadPool(workers);
+        workersDone = new CountDownLatch(workers);
+        for (int i = 0; i < workers; i++) {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        work();
+                    } finally {
+                        workersDone.countDown();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Waits for the experiment to finish.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return the final estimate, or null if the experiment is still running
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public Estimate awaitResult(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!workersDone.await(timeout, unit)) {
+            return null;
+        }
+        return getEstimate();
+    }
+
+    /**
+     * Stops the workers, the trials which are still running are left out.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns the estimate of the trials finished so far. The confidence
+     * interval narrows as the trials come in.
+     *
+     * @return the interim estimate
+     */
+    public Estimate getEstimate() {
+        synchronized (lock) {
+            return new Estimate(years.getCount(), years.getMean(), years.getStandardDeviation(),
+                Z_95 * years.getStandardError(), years.getMin(), years.getMax(), median.get(), p90.get(),
+                p99.get(), finished, cancelled);
+        }
+    }
+
+    private void work() {
+        SplitMix64 random = new SplitMix64(0);
+        LottoLogic lottoLogic = new LottoLogic(random, format);
+
+        long trial;
+        while ((trial = claimTrial()) >= 0) {
+            random.seedStream(seed, trial);
+            long weeks = waitingTime != null ? waitingTime.sampleWinningWeek(random) + 1 : playUntilWin(lottoLogic);
+            if (weeks < 0) {
+                return;
+            }
+            commitTrial(weeks);
+        }
+    }
+
+    /**
+     * Plays weeks until the first win.
+     *
+     * @return the amount of weeks played, or -1 if the experiment stopped first
+     */
+    private long playUntilWin(LottoLogic lottoLogic) {
+        long weeks = 0;
+        while (true) {
+            lottoLogic.draw();
+            weeks++;
+            if (lottoLogic.countMatches(ticketMask) >= requiredMatches) {
+                return weeks;
+            }
+            if ((weeks & STOP_CHECK_MASK) == 0 && (finished || cancelled)) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * @return the index of the next trial, or -1 when there is nothing more to do
+     */
+    private long claimTrial() {
+        synchronized (lock) {
+            if (finished || cancelled || nextTrial >= maxTrials) {
+                return -1;
+            }
+            return nextTrial++;
+        }
+    }
+
+    private void commitTrial(long weeks) {
+        double value = weeks / WEEKS_PER_YEAR;
+        synchronized (lock) {
+            if (finished || cancelled) {
+                return;
+            }
+            years.add(value);
+            median.add(value);
+            p90.add(value);
+            p99.add(value);
+
+            long trials = years.getCount();
+            if (trials >= maxTrials || (targetWidth > 0 && trials >= MIN_TRIALS
+                && 2 * Z_95 * years.getStandardError() <= targetWidth)) {
+                finished = true;
+            }
+        }
+    }
+
+    /**
+     * The estimated distribution of the years to win, from the trials finished so far.
+     */
+    public static class Estimate {
+        private final long trials;
+        private final double mean;
+        private final double standardDeviation;
+        private final double halfWidth;
+        private final double min;
+        private final double max;
+        private final double median;
+        private final double p90;
+        private final double p99;
+        private final boolean finished;
+        private final boolean cancelled;
+
+        Estimate(long trials, double mean, double standardDeviation, double halfWidth, double min, double max,
+                 double median, double p90, double p99, boolean finished, boolean cancelled) {
+            this.trials = trials;
+            this.mean = mean;
+            this.standardDeviation = standardDeviation;
+            this.halfWidth = halfWidth;
+            this.min = min;
+            this.max = max;
+            this.median = median;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.finished = finished;
+            this.cancelled = cancelled;
+        }
+
+        /**
+         * @return amount of finished trials
+         */
+        public long getTrials() {
+            return trials;
+        }
+
+        /**
+         * @return the mean years to win
+         */
+        public double getMean() {
+            return mean;
+        }
+
+        /**
+         * @return the standard deviation of the years to win
+         */
+        public double getStandardDeviation() {
+            return standardDeviation;
+        }
+
+        /**
+         * @return the lower end of the 95 % confidence interval of the mean
+         */
+        public double getLow() {
+            return mean - halfWidth;
+        }
+
+        /**
+         * @return the upper end of the 95 % confidence interval of the mean
+         */
+        public double getHigh() {
+            return mean + halfWidth;
+        }
+
+        /**
+         * @return the width of the 95 % confidence interval of the mean, in years
+         */
+        public double getWidth() {
+            return 2 * halfWidth;
+        }
+
+        /**
+         * @return the fewest years any trial took, +infinity if there are no trials
+         */
+        public double getMin() {
+            return min;
+        }
+
+        /**
+         * @return the most years any trial took, -infinity if there are no trials
+         */
+        public double getMax() {
+            return max;
+        }
+
+        /**
+         * @return the estimated median of the years to win
+         */
+        public double getMedian() {
+            return median;
+        }
+
+        /**
+         * @return the estimated 90th percentile of the years to win
+         */
+        public double getP90() {
+            return p90;
+        }
+
+        /**
+         * @return the estimated 99th percentile of the years to win
+         */
+        public double getP99() {
+            return p99;
+        }
+
+        /**
+         * @return true if the experiment reached its target width or its most trials
+         */
+        public boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * @return true if the experiment was cancelled before it finished
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
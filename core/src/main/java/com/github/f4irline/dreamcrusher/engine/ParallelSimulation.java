@@ -0,0 +1,362 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import com.github.f4irline.dreamcrusher.LottoLogic;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the lotto on several worker threads at once.
+ *
+ * The weeks are split into blocks of BLOCK_WEEKS weeks and the workers claim
+ * blocks one at a time. Every block draws its numbers from its own split stream
+ * of the root seed, and the finished blocks are merged strictly in week order,
+ * so the result only depends on the seed (not on the worker count or on how the
+ * threads were scheduled). At most SLOTS_PER_WORKER blocks per worker can wait
+ * for the merge, which keeps the memory use constant. A worker draws and
+ * matches a whole block at once with {@link BlockKernel}.
+ */
+public class ParallelSimulation {
+
+    /**
+     * How many weeks one block contains.
+     */
+    public static final int BLOCK_WEEKS = 4096;
+
+    private static final int SLOTS_PER_WORKER = 4;
+
+    private final long ticketMask;
+    private final int requiredMatches;
+    private final long seed;
+    private final int workers;
+    private final long maxWeeks;
+    private final boolean stopAtFirstWin;
+    private final GameFormat format;
+
+    private final Object lock = new Object();
+    private final int slots;
+    private final LottoStatistics[] slotStatistics;
+    private final long[] slotWeeks;
+    private final long[] slotWinningWeek;
+    private final long[] slotWinningDraw;
+    private final boolean[] slotReady;
+
+    // Guarded by lock.
+    private final LottoStatistics statistics;
+    private long nextBlock;
+    private long mergedBlocks;
+    private long firstWinningWeek = -1;
+    private long winningDraw;
+
+    private volatile long mergedWeeks;
+    private volatile int bestMatch;
+    private volatile boolean finished;
+    private volatile boolean cancelled;
+
+    private ExecutorService pool;
+    private CountDownLatch workersDone;
+
+    /**
+     * @param ticketMask the user selection as a bitmask
+     * @param requiredMatches amount of same numbers needed to win
+     * @param seed the root seed of the random numbers
+     * @param workers amount of worker threads
+     * @param maxWeeks the most weeks to iterate if nobody wins
+     */
+    public ParallelSimulation(long ticketMask, int requiredMatches, long seed, int workers, long maxWeeks) {
+        this(ticketMask, requiredMatches, seed, workers, maxWeeks, true);
+    }
+
+    /**
+     * @param ticketMask the user selection as a bitmask
+     * @param requiredMatches amount of same numbers needed to win
+     * @param seed the root seed of the random numbers
+     * @param workers amount of worker threads
+     * @param maxWeeks the most weeks to iterate
+     * @param stopAtFirstWin true to stop at the first win, false to always run maxWeeks weeks
+     */
+    public ParallelSimulation(long ticketMask, int requiredMatches, long seed, int workers, long maxWeeks,
+                              boolean stopAtFirstWin) {
+        this(ticketMask, requiredMatches, seed, workers, maxWeeks, stopAtFirstWin, GameFormat.DEFAULT);
+    }
+
+    /**
+     * @param ticketMask the user selection as a bitmask
+     * @param requiredMatches amount of same numbers needed to win
+     * @param seed the root seed of the random numbers
+     * @param workers amount of worker threads
+     * @param maxWeeks the most weeks to iterate
+     * @param stopAtFirstWin true to stop at the first win, false to always run maxWeeks weeks
+     * @param format the format of the draws
+     */
+    public ParallelSimulation(long ticketMask, int requiredMatches, long seed, int workers, long maxWeeks,
+                              boolean stopAtFirstWin, GameFormat format) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("At least one worker is needed: " + workers);
+        }
+        this.ticketMask = ticketMask;
+        this.requiredMatches = requiredMatches;
+        this.seed = seed;
+        this.workers = workers;
+        this.maxWeeks = maxWeeks;
+        this.stopAtFirstWin = stopAtFirstWin;
+        this.format = format;
+
+        slots = workers * SLOTS_PER_WORKER;
+        slotStatistics = new LottoStatistics[slots];
+        for (int i = 0; i < slots; i++) {
+            slotStatistics[i] = new LottoStatistics(requiredMatches, format);
+        }
+        statistics = new LottoStatistics(requiredMatches, format);
+        slotWeeks = new long[slots];
+        slotWinningWeek = new long[slots];
+        slotWinningDraw = new long[slots];
+        slotReady = new boolean[slots];
+    }
+
+    /**
+     * Returns the default amount of workers, one per available core.
+     *
+     * @return the amount of available processors
+     */
+    public static int defaultWorkers() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Starts the worker threads. Can only be called once.
+     */
+    public void start() {
+        if (pool != null) {
+            throw new IllegalStateException("Simulation already started");
+        }
+        pool = Executors.newFixedThreadPool(workers);
+        workersDone = new CountDownLatch(workers);
+        for (int i = 0; i < workers; i++) {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        work();
+                    } finally {
+                        workersDone.countDown();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Waits for the simulation to finish.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return the result, or null if the simulation is still running
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public Result awaitResult(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!workersDone.await(timeout, unit)) {
+            return null;
+        }
+        synchronized (lock) {
+            return new Result(firstWinningWeek, winningDraw, mergedWeeks, statistics.snapshot(), cancelled);
+        }
+    }
+
+    /**
+     * Stops the workers after their current block.
+     */
+    public void cancel() {
+        cancelled = true;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Returns the amount of weeks merged so far.
+     *
+     * @return the weeks done
+     */
+    public long getWeeksDone() {
+        return mergedWeeks;
+    }
+
+    /**
+     * Returns a copy of the statistics of the weeks merged so far.
+     *
+     * @return the statistics snapshot
+     */
+    public LottoStatistics snapshotStatistics() {
+        synchronized (lock) {
+            return statistics.snapshot();
+        }
+    }
+
+    /**
+     * Returns the most same numbers found so far.
+     *
+     * @return the best match
+     */
+    public int getBestMatch() {
+        return bestMatch;
+    }
+
+    private void work() {
+        LottoStatistics blockStatistics = new LottoStatistics(requiredMatches, format);
+        SplitMix64 random = new SplitMix64(0);
+        LottoLogic lottoLogic = new LottoLogic(random, format);
+        long[] draws = new long[BLOCK_WEEKS];
+        int[] matches = new int[BLOCK_WEEKS];
+
+        long block;
+        while ((block = claimBlock()) >= 0) {
+            long start = block * BLOCK_WEEKS;
+            int weeks = (int) Math.min(BLOCK_WEEKS, maxWeeks - start);
+            long winningWeek = -1;
+            long winningDraw = 0;
+            blockStatistics.reset();
+            random.seedStream(seed, block);
+
+            lottoLogic.drawBlock(draws, weeks);
+            if (BlockKernel.match(draws, weeks, ticketMask, matches) >= requiredMatches) {
+                int first = BlockKernel.firstWin(matches, weeks, requiredMatches);
+                winningWeek = start + first;
+                winningDraw = draws[first];
+                // Weeks after the first win of the block can never be part of the result.
+                if (stopAtFirstWin) {
+                    weeks = first + 1;
+                }
+            }
+            blockStatistics.recordBlock(draws, matches, weeks);
+            commitBlock(block, blockStatistics, weeks, winningWeek, winningDraw);
+        }
+    }
+
+    /**
+     * Hands out the next block, waiting while the merge is too far behind.
+     *
+     * @return the block index, or -1 when there is nothing more to do
+     */
+    private long claimBlock() {
+        synchronized (lock) {
+            while (!finished && !cancelled && nextBlock >= mergedBlocks + slots) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    cancelled = true;
+                }
+            }
+            if (finished || cancelled || nextBlock * BLOCK_WEEKS >= maxWeeks) {
+                return -1;
+            }
+            return nextBlock++;
+        }
+    }
+
+    /**
+     * Stores the result of a block and merges every block which is now next in order.
+     */
+    private void commitBlock(long block, LottoStatistics blockStatistics, long weeks, long winningWeek,
+                             long blockWinningDraw) {
+        synchronized (lock) {
+            int slot = (int) (block % slots);
+            blockStatistics.copyTo(slotStatistics[slot]);
+            slotWeeks[slot] = weeks;
+            slotWinningWeek[slot] = winningWeek;
+            slotWinningDraw[slot] = blockWinningDraw;
+            slotReady[slot] = true;
+
+            int next = (int) (mergedBlocks % slots);
+            while (!finished && slotReady[next]) {
+                LottoStatistics merged = slotStatistics[next];
+                statistics.merge(merged);
+                for (int i = bestMatch + 1; i <= DrawMask.NUMBERS_DRAWN; i++) {
+                    if (merged.getMatchCount(i) > 0) {
+                        bestMatch = i;
+                    }
+                }
+                mergedWeeks += slotWeeks[next];
+                slotReady[next] = false;
+                mergedBlocks++;
+
+                if (slotWinningWeek[next] >= 0 && firstWinningWeek < 0) {
+                    firstWinningWeek = slotWinningWeek[next];
+                    winningDraw = slotWinningDraw[next];
+                    finished = stopAtFirstWin;
+                }
+                if (mergedWeeks >= maxWeeks) {
+                    finished = true;
+                }
+                next = (int) (mergedBlocks % slots);
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * The merged result of a parallel simulation.
+     */
+    public static class Result {
+        private final long firstWinningWeek;
+        private final long winningDraw;
+        private final long totalWeeks;
+        private final LottoStatistics statistics;
+        private final boolean cancelled;
+
+        Result(long firstWinningWeek, long winningDraw, long totalWeeks, LottoStatistics statistics,
+               boolean cancelled) {
+            this.firstWinningWeek = firstWinningWeek;
+            this.winningDraw = winningDraw;
+            this.totalWeeks = totalWeeks;
+            this.statistics = statistics;
+            this.cancelled = cancelled;
+        }
+
+        /**
+         * @return the first week (starting from 0) with enough same numbers, or -1 if none
+         */
+        public long getFirstWinningWeek() {
+            return firstWinningWeek;
+        }
+
+        /**
+         * @return the draw of the first winning week, or 0 if nobody won
+         */
+        public long getWinningDraw() {
+            return winningDraw;
+        }
+
+        /**
+         * @return the amount of weeks up to and including the first winning week,
+         *         or all the weeks if the simulation doesn't stop at the first win
+         */
+        public long getTotalWeeks() {
+            return totalWeeks;
+        }
+
+        /**
+         * @return how many weeks had 0..7 same numbers
+         */
+        public long[] getHistogram() {
+            return statistics.getHistogram();
+        }
+
+        /**
+         * @return the statistics of every week in getTotalWeeks()
+         */
+        public LottoStatistics getStatistics() {
+            return statistics;
+        }
+
+        /**
+         * @return true if the simulation was cancelled before it finished
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A latest-value channel for the progress of a run.
+ *
+ * The simulation thread publishes as often as it likes and readers only ever
+ * see the newest value, so the publishing rate and the reading rate are fully
+ * decoupled. Publishing and reading are lock and allocation free: the writer
+ * bumps a sequence number to odd before writing and back to even after, and a
+ * reader retries if the sequence changed while it was copying (a seqlock).
+ * Only one thread may publish at a time.
+ *
+ * Listeners get pushed the same latest value on an executor of their choice.
+ * Every listener has its own snapshot and a scheduled flag, so publishing
+ * queues at most one task per listener and allocates nothing: a listener which
+ * can't keep up only ever sees the newest progress.
+ */
+public class ProgressChannel {
+
+    private static final Registration[] NO_LISTENERS = new Registration[0];
+
+    private volatile long sequence;
+    private volatile long drawMask;
+    private volatile long weeks;
+    private volatile int latestMatch;
+    private volatile int bestMatch;
+    private volatile int winners;
+    private volatile double weeksPerSecond;
+    private volatile long distinctDraws;
+    private volatile long firstRepeatWeek;
+    private volatile long publishNanos;
+    private final AtomicLongArray histogram = new AtomicLongArray(DrawMask.NUMBERS_DRAWN + 1);
+
+    private final Object listenersLock = new Object();
+    private volatile Registration[] registrations = NO_LISTENERS;
+
+    /**
+     * Replaces the latest progress, stamped with the System.nanoTime() of the
+     * publish, and schedules the listeners which aren't scheduled yet.
+     *
+     * @param drawMask the latest draw, 0 if there is nothing to show
+     * @param weeks the weeks done
+     * @param latestMatch amount of same numbers in the latest draw
+     * @param bestMatch the most same numbers found so far
+     * @param winners amount of winning tickets in a syndicate run
+     * @param weeksPerSecond the current iteration speed, 0 if unknown
+     * @param distinctDraws amount of different draws seen so far
+     * @param firstRepeatWeek the first week which repeated an earlier draw, -1 if none yet
+     * @param statistics the statistics whose match histogram is published, or null for none
+     */
+    public void publish(long drawMask, long weeks, int latestMatch, int bestMatch, int winners,
+                        double weeksPerSecond, long distinctDraws, long firstRepeatWeek,
+                        LottoStatistics statistics) {
+        long next = sequence + 1;
+        sequence = next;
+        this.drawMask = drawMask;
+        this.weeks = weeks;
+        this.latestMatch = latestMatch;
+        this.bestMatch = bestMatch;
+        this.winners = winners;
+        this.weeksPerSecond = weeksPerSecond;
+        this.distinctDraws = distinctDraws;
+        this.firstRepeatWeek = firstRepeatWeek;
+        this.publishNanos = System.nanoTime();
+        for (int i = 0; i < histogram.length(); i++) {
+            histogram.set(i, statistics != null ? statistics.getMatchCount(i) : 0);
+        }
+        sequence = next + 1;
+
+        for (Registration registration : registrations) {
+            registration.schedule();
+        }
+    }
+
+    /**
+     * Tells every listener that the run was won, after the progress they have been given.
+     *
+     * @param requiredMatches amount of same numbers which was needed to win
+     * @param winningRows amount of rows which won
+     */
+    public void publishVictory(final int requiredMatches, final long winningRows) {
+        for (final Registration registration : registrations) {
+            registration.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (registration.active) {
+                        registration.listener.onVictory(requiredMatches, winningRows);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Adds a listener, which gets the latest progress right away if anything
+     * has been published, and then after every publish.
+     *
+     * @param listener the listener
+     * @param executor the executor which calls the listener, it must run its
+     *                 tasks one at a time, like a single thread or a looper
+     */
+    public void addListener(ProgressListener listener, Executor executor) {
+        synchronized (listenersLock) {
+            Registration[] current = registrations;
+            Registration[] added = new Registration[current.length + 1];
+            System.arraycopy(current, 0, added, 0, current.length);
+            added[current.length] = new Registration(listener, executor);
+            registrations = added;
+            added[current.length].schedule();
+        }
+    }
+
+    /**
+     * Removes a listener. A call which is already pending on its executor is skipped.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(ProgressListener listener) {
+        synchronized (listenersLock) {
+            Registration[] current = registrations;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].listener == listener) {
+                    current[i].active = false;
+                    Registration[] removed = new Registration[current.length - 1];
+                    System.arraycopy(current, 0, removed, 0, i);
+                    System.arraycopy(current, i + 1, removed, i, current.length - i - 1);
+                    registrations = removed;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the latest progress into the target if it's newer than what
+     * the target already holds.
+     *
+     * @param target the reader's own snapshot, reused between calls
+     * @return true if the target was updated
+     */
+    public boolean poll(Snapshot target) {
+        while (true) {
+            long before = sequence;
+            if (before == target.sequence) {
+                return false;
+            }
+            if ((before & 1) != 0) {
+                Thread.yield();
+                continue;
+            }
+            long readDrawMask = drawMask;
+            long readWeeks = weeks;
+            int readLatestMatch = latestMatch;
+            int readBestMatch = bestMatch;
+            int readWinners = winners;
+            double readWeeksPerSecond = weeksPerSecond;
+            long readDistinctDraws = distinctDraws;
+            long readFirstRepeatWeek = firstRepeatWeek;
+            long readPublishNanos = publishNanos;
+            for (int i = 0; i < target.histogram.length; i++) {
+                target.histogram[i] = histogram.get(i);
+            }
+            if (sequence == before) {
+                target.sequence = before;
+                target.drawMask = readDrawMask;
+                target.weeks = readWeeks;
+                target.latestMatch = readLatestMatch;
+                target.bestMatch = readBestMatch;
+                target.winners = readWinners;
+                target.weeksPerSecond = readWeeksPerSecond;
+                target.distinctDraws = readDistinctDraws;
+                target.firstRepeatWeek = readFirstRepeatWeek;
+                target.publishNanos = readPublishNanos;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * A listener with its own snapshot. It's its own task, so scheduling it
+     * allocates nothing.
+     */
+    private final class Registration implements Runnable {
+        final ProgressListener listener;
+        final Executor executor;
+        final Snapshot snapshot = new Snapshot();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile boolean active = true;
+
+        Registration(ProgressListener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            // Cleared before polling, so a publish during the call schedules the next one.
+            scheduled.set(false);
+            if (active && poll(snapshot)) {
+                listener.onProgress(snapshot);
+            }
+        }
+    }
+
+    /**
+     * A reader's copy of the progress. Reuse the same instance for every poll.
+     */
+    public static class Snapshot {
+        private long sequence;
+        private long drawMask;
+        private long weeks;
+        private int latestMatch;
+        private int bestMatch;
+        private int winners;
+        private double weeksPerSecond;
+        private long distinctDraws;
+        private long firstRepeatWeek = -1;
+        private long publishNanos;
+        private final long[] histogram = new long[DrawMask.NUMBERS_DRAWN + 1];
+
+        /**
+         * @return the latest draw as a bitmask, 0 if there is nothing to show
+         */
+        public long getDrawMask() {
+            return drawMask;
+        }
+
+        /**
+         * @return the weeks done
+         */
+        public long getWeeks() {
+            return weeks;
+        }
+
+        /**
+         * @return amount of same numbers in the latest draw
+         */
+        public int getLatestMatch() {
+            return latestMatch;
+        }
+
+        /**
+         * @param matches amount of same numbers, 0..7
+         * @return amount of weeks with exactly that many same numbers
+         */
+        public long getMatchCount(int matches) {
+            return histogram[matches];
+        }
+
+        /**
+         * @return the most same numbers found so far
+         */
+        public int getBestMatch() {
+            return bestMatch;
+        }
+
+        /**
+         * @return amount of winning tickets in a syndicate run
+         */
+        public int getWinners() {
+            return winners;
+        }
+
+        /**
+         * @return the current iteration speed, 0 if unknown
+         */
+        public double getWeeksPerSecond() {
+            return weeksPerSecond;
+        }
+
+        /**
+         * @return amount of different draws seen so far
+         */
+        public long getDistinctDraws() {
+            return distinctDraws;
+        }
+
+        /**
+         * @return the share of all the possible draws seen so far, 0..1
+         */
+        public double getCoverage() {
+            return (double) distinctDraws / CombinationRank.COMBINATIONS;
+        }
+
+        /**
+         * @return the first week which repeated an earlier draw, -1 if none yet
+         */
+        public long getFirstRepeatWeek() {
+            return firstRepeatWeek;
+        }
+
+        /**
+         * @return the System.nanoTime() when the progress was published
+         */
+        public long getPublishNanos() {
+            return publishNanos;
+        }
+    }
+}
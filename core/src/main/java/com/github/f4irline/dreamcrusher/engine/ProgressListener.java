@@ -0,0 +1,28 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+/**
+ * Receives the progress of a run from a {@link ProgressChannel}.
+ *
+ * The methods are called on the executor the listener was added with. A slow
+ * listener never holds the run back: at most one progress call per listener is
+ * pending at a time, and it delivers whatever is the latest progress when it
+ * runs, so the updates in between are skipped.
+ */
+public interface ProgressListener {
+
+    /**
+     * Called with the latest progress. The snapshot belongs to the channel
+     * and is reused for the next call, so copy what should be kept.
+     *
+     * @param progress the latest progress
+     */
+    void onProgress(ProgressChannel.Snapshot progress);
+
+    /**
+     * Called once when the run is won.
+     *
+     * @param requiredMatches amount of same numbers which was needed to win
+     * @param winningRows amount of rows which won, more than 1 for system entries
+     */
+    void onVictory(int requiredMatches, long winningRows);
+}
@@ -0,0 +1,53 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+/**
+ * A source of pseudorandom numbers for the draw engine.
+ *
+ * Implementations are not thread safe, every thread should use its own
+ * instance. Seeding two instances of the same type with the same seed
+ * gives the same sequence, which makes every run reproducible.
+ */
+public interface RandomSource {
+
+    /**
+     * Size of the saved state of any source, in longs.
+     */
+    int STATE_LONGS = 4;
+
+    /**
+     * Returns the next pseudorandom long, uniform over all the 2^64 values.
+     *
+     * @return the next value
+     */
+    long nextLong();
+
+    /**
+     * Returns a pseudorandom int between 0 (inclusive) and bound (exclusive).
+     *
+     * @param bound the upper bound, must be positive
+     * @return the next value
+     */
+    int nextInt(int bound);
+
+    /**
+     * Returns a pseudorandom double between 0.0 (inclusive) and 1.0 (exclusive).
+     *
+     * @return the next value
+     */
+    double nextDouble();
+
+    /**
+     * Saves the internal state, so the sequence can be continued later
+     * with {@link #restoreState(long[])}.
+     *
+     * @param state the array to fill, at least STATE_LONGS long
+     */
+    void saveState(long[] state);
+
+    /**
+     * Restores a state saved by a source of the same type.
+     *
+     * @param state the saved state
+     */
+    void restoreState(long[] state);
+}
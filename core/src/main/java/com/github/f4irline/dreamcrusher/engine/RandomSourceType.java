@@ -0,0 +1,42 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+/**
+ * The available random sources.
+ */
+public enum RandomSourceType {
+    /**
+     * java.util.Random, the same generator Math.random() uses.
+     */
+    REFERENCE {
+        @Override
+        public RandomSource create(long seed) {
+            return new JdkRandomSource(seed);
+        }
+    },
+    /**
+     * SplitMix64, the algorithm of java.util.SplittableRandom.
+     */
+    SPLITMIX {
+        @Override
+        public RandomSource create(long seed) {
+            return new SplitMix64(seed);
+        }
+    },
+    /**
+     * xoshiro256**.
+     */
+    XOSHIRO {
+        @Override
+        public RandomSource create(long seed) {
+            return new Xoshiro256StarStar(seed);
+        }
+    };
+
+    /**
+     * Creates a new source of this type.
+     *
+     * @param seed the seed
+     * @return the new source
+     */
+    public abstract RandomSource create(long seed);
+}
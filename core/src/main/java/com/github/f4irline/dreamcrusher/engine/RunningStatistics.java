@@ -0,0 +1,97 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+/**
+ * The mean, the variance and the extremes of a stream of values in constant
+ * memory, updated with Welford's algorithm, which stays accurate however many
+ * values there are and however large they get.
+ */
+public class RunningStatistics {
+
+    private long count;
+    private double mean;
+    // Sum of the squared differences from the mean.
+    private double squares;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Adds one value.
+     *
+     * @param value the value
+     */
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        squares += delta * (value - mean);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds every value of the other statistics, as if they were added one by one.
+     *
+     * @param other the statistics to add
+     */
+    public void merge(RunningStatistics other) {
+        if (other.count == 0) {
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        squares += other.squares + delta * delta * count * other.count / total;
+        count = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * @return amount of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the mean, 0 if there are no values
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * @return the sample variance, 0 if there are less than two values
+     */
+    public double getVariance() {
+        return count > 1 ? squares / (count - 1) : 0;
+    }
+
+    /**
+     * @return the sample standard deviation
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * @return the standard error of the mean
+     */
+    public double getStandardError() {
+        return count > 0 ? getStandardDeviation() / Math.sqrt(count) : 0;
+    }
+
+    /**
+     * @return the smallest value, +infinity if there are no values
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * @return the largest value, -infinity if there are no values
+     */
+    public double getMax() {
+        return max;
+    }
+}
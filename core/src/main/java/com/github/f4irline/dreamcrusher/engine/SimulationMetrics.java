@@ -0,0 +1,284 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Always-on metrics of the simulation: the speed, where the time of a week
+ * goes and how much a week allocates.
+ *
+ * Cheap enough to stay on in production: the draw and the match are only
+ * timed every SAMPLE_MASK + 1 weeks, every recording is a couple of stores
+ * into a {@link LatencyHistogram}, and the speed and the allocations are
+ * only refreshed when the progress is. Runs which draw and match whole
+ * blocks of weeks at a time record the blocks apart from the single weeks,
+ * so the two never mix in one histogram. The simulation thread records the
+ * phases of the weeks and the UI thread the render latency, any thread can
+ * take a snapshot or dump the metrics.
+ */
+public class SimulationMetrics {
+
+    /**
+     * The weeks whose index has none of these bits set are timed (must be 2^n - 1).
+     */
+    public static final long SAMPLE_MASK = 63;
+
+    /**
+     * The time constant of the moving average of the speed, in seconds.
+     */
+    private static final double AVERAGE_SECONDS = 5;
+
+    /**
+     * Tells how many bytes have been allocated so far.
+     */
+    public interface AllocationProbe {
+        /**
+         * @return the bytes allocated so far, or -1 if unknown
+         */
+        long getAllocatedBytes();
+    }
+
+    /**
+     * The probe of platforms which can't count the allocations.
+     */
+    public static final AllocationProbe NO_ALLOCATIONS = new AllocationProbe() {
+        @Override
+        public long getAllocatedBytes() {
+            return -1;
+        }
+    };
+
+    private final AllocationProbe allocationProbe;
+    private final LatencyHistogram draw = new LatencyHistogram();
+    private final LatencyHistogram match = new LatencyHistogram();
+    private final LatencyHistogram blockDraw = new LatencyHistogram();
+    private final LatencyHistogram blockMatch = new LatencyHistogram();
+    private final LatencyHistogram publish = new LatencyHistogram();
+    private final LatencyHistogram render = new LatencyHistogram();
+
+    private volatile double weeksPerSecond;
+    private volatile double averageWeeksPerSecond;
+    private volatile double allocatedBytesPerWeek = -1;
+    // Only written by the simulation thread.
+    private volatile long blockWeeks;
+    // Only touched by the thread which records the speed.
+    private long lastAllocatedBytes = -1;
+
+    /**
+     * @param allocationProbe the counter of the allocated bytes
+     */
+    public SimulationMetrics(AllocationProbe allocationProbe) {
+        this.allocationProbe = allocationProbe;
+    }
+
+    /**
+     * Checks if the phases of the week are timed.
+     *
+     * @param week the index of the week
+     * @return true for one week out of every SAMPLE_MASK + 1
+     */
+    public static boolean isSampled(long week) {
+        return (week & SAMPLE_MASK) == 0;
+    }
+
+    /**
+     * @param nanos how long drawing the numbers of a sampled week took
+     */
+    public void recordDraw(long nanos) {
+        draw.record(nanos);
+    }
+
+    /**
+     * @param nanos how long matching and recording a sampled week took
+     */
+    public void recordMatch(long nanos) {
+        match.record(nanos);
+    }
+
+    /**
+     * Records a block of weeks which was drawn and matched at once. Only call
+     * from the simulation thread.
+     *
+     * @param drawNanos how long drawing the numbers of the whole block took
+     * @param matchNanos how long matching and recording the whole block took
+     * @param weeks amount of weeks in the block
+     */
+    public void recordBlock(long drawNanos, long matchNanos, int weeks) {
+        blockDraw.record(drawNanos);
+        blockMatch.record(matchNanos);
+        blockWeeks += weeks;
+    }
+
+    /**
+     * @param nanos how long publishing the progress took
+     */
+    public void recordPublish(long nanos) {
+        publish.record(nanos);
+    }
+
+    /**
+     * Records the time from publishing the progress to rendering it. Only
+     * call from the one thread which renders.
+     *
+     * @param nanos the publish to render latency
+     */
+    public void recordRender(long nanos) {
+        render.record(nanos);
+    }
+
+    /**
+     * Refreshes the speed, its moving average and the allocations per week.
+     *
+     * @param weeks the weeks run since the previous call
+     * @param elapsedNanos the time since the previous call
+     */
+    public void recordSpeed(long weeks, long elapsedNanos) {
+        if (elapsedNanos <= 0) {
+            return;
+        }
+        double speed = weeks * 1e9 / elapsedNanos;
+        double average = averageWeeksPerSecond;
+        if (average == 0) {
+            average = speed;
+        } else {
+            average += (1 - Math.exp(-elapsedNanos / 1e9 / AVERAGE_SECONDS)) * (speed - average);
+        }
+        weeksPerSecond = speed;
+        averageWeeksPerSecond = average;
+
+        long allocated = allocationProbe.getAllocatedBytes();
+        if (allocated >= 0 && lastAllocatedBytes >= 0 && weeks > 0) {
+            allocatedBytesPerWeek = (double) (allocated - lastAllocatedBytes) / weeks;
+        }
+        lastAllocatedBytes = allocated;
+    }
+
+    /**
+     * Starts the speed over for a new run. Call from the thread which records the speed.
+     */
+    public void resetSpeed() {
+        weeksPerSecond = 0;
+        averageWeeksPerSecond = 0;
+        lastAllocatedBytes = -1;
+    }
+
+    /**
+     * Returns a copy, which the recording threads won't touch anymore.
+     *
+     * @return the snapshot of the metrics
+     */
+    public SimulationMetrics snapshot() {
+        SimulationMetrics snapshot = new SimulationMetrics(NO_ALLOCATIONS);
+        draw.copyTo(snapshot.draw);
+        match.copyTo(snapshot.match);
+        blockDraw.copyTo(snapshot.blockDraw);
+        blockMatch.copyTo(snapshot.blockMatch);
+        snapshot.blockWeeks = blockWeeks;
+        publish.copyTo(snapshot.publish);
+        render.copyTo(snapshot.render);
+        snapshot.weeksPerSecond = weeksPerSecond;
+        snapshot.averageWeeksPerSecond = averageWeeksPerSecond;
+        snapshot.allocatedBytesPerWeek = allocatedBytesPerWeek;
+        return snapshot;
+    }
+
+    /**
+     * Writes the metrics as text, one line per metric.
+     *
+     * @param writer the writer to write to
+     */
+    public void dump(PrintWriter writer) {
+        writer.println(String.format(Locale.US, "weeks/s: %.0f (%.0f s average %.0f)",
+            weeksPerSecond, AVERAGE_SECONDS, averageWeeksPerSecond));
+        double allocated = allocatedBytesPerWeek;
+        writer.println(allocated >= 0
+            ? String.format(Locale.US, "allocated bytes/week: %.3f", allocated) : "allocated bytes/week: n/a");
+        dump(writer, "draw", draw);
+        dump(writer, "match", match);
+        long blocks = blockDraw.getCount();
+        if (blocks > 0) {
+            writer.println(String.format(Locale.US, "blocks: n=%d mean weeks=%.0f", blocks,
+                (double) blockWeeks / blocks));
+            dump(writer, "block draw", blockDraw);
+            dump(writer, "block match", blockMatch);
+        }
+        dump(writer, "publish", publish);
+        dump(writer, "publish to render", render);
+    }
+
+    private static void dump(PrintWriter writer, String name, LatencyHistogram histogram) {
+        writer.println(String.format(Locale.US, "%s: n=%d mean=%.0fns p50<%dns p99<%dns max<%dns", name,
+            histogram.getCount(), histogram.getMeanNanos(), histogram.getQuantileNanos(0.5),
+            histogram.getQuantileNanos(0.99), histogram.getMaxNanos()));
+    }
+
+    /**
+     * @return the speed over the latest refresh, 0 if unknown
+     */
+    public double getWeeksPerSecond() {
+        return weeksPerSecond;
+    }
+
+    /**
+     * @return the exponential moving average of the speed, 0 if unknown
+     */
+    public double getAverageWeeksPerSecond() {
+        return averageWeeksPerSecond;
+    }
+
+    /**
+     * @return the bytes allocated per week over the latest refresh, -1 if unknown
+     */
+    public double getAllocatedBytesPerWeek() {
+        return allocatedBytesPerWeek;
+    }
+
+    /**
+     * @return the durations of drawing the numbers of the sampled weeks
+     */
+    public LatencyHistogram getDraw() {
+        return draw;
+    }
+
+    /**
+     * @return the durations of matching the sampled weeks
+     */
+    public LatencyHistogram getMatch() {
+        return match;
+    }
+
+    /**
+     * @return the durations of drawing the numbers of whole blocks
+     */
+    public LatencyHistogram getBlockDraw() {
+        return blockDraw;
+    }
+
+    /**
+     * @return the durations of matching and recording whole blocks
+     */
+    public LatencyHistogram getBlockMatch() {
+        return blockMatch;
+    }
+
+    /**
+     * @return amount of weeks in all the recorded blocks
+     */
+    public long getBlockWeeks() {
+        return blockWeeks;
+    }
+
+    /**
+     * @return the durations of publishing the progress
+     */
+    public LatencyHistogram getPublish() {
+        return publish;
+    }
+
+    /**
+     * @return the latencies from publishing the progress to rendering it
+     */
+    public LatencyHistogram getRender() {
+        return render;
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+/**
+ * A small, non-synchronized SplitMix64 generator.
+ *
+ * Same algorithm as java.util.SplittableRandom, which isn't available
+ * before API level 24. Besides {@link #split()}, the generator can be
+ * positioned on the n:th split stream of a root seed directly, which lets
+ * workers pick up any stream without sharing a root generator.
+ */
+public final class SplitMix64 extends AbstractRandomSource {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long seed;
+    private long gamma;
+
+    /**
+     * Creates a generator from the given seed.
+     *
+     * @param seed the seed
+     */
+    public SplitMix64(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private SplitMix64(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    @Override
+    public long nextLong() {
+        return mix64(seed += gamma);
+    }
+
+    @Override
+    public void saveState(long[] state) {
+        state[0] = seed;
+        state[1] = gamma;
+    }
+
+    @Override
+    public void restoreState(long[] state) {
+        seed = state[0];
+        gamma = state[1];
+    }
+
+    /**
+     * Returns a new generator which is statistically independent of this one.
+     *
+     * @return the new generator
+     */
+    public SplitMix64 split() {
+        long splitSeed = nextLong();
+        return new SplitMix64(splitSeed, mixGamma(seed += gamma));
+    }
+
+    /**
+     * Positions this generator on the given split stream of the root seed.
+     * The result is the same generator the index:th call of {@link #split()}
+     * would return from a fresh {@code new SplitMix64(rootSeed)}.
+     *
+     * @param rootSeed the root seed
+     * @param index the stream index, starting from 0
+     */
+    public void seedStream(long rootSeed, long index) {
+        long base = rootSeed + 2 * index * GOLDEN_GAMMA;
+        seed = mix64(base + GOLDEN_GAMMA);
+        gamma = mixGamma(base + 2 * GOLDEN_GAMMA);
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
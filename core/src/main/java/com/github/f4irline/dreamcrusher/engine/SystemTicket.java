@@ -0,0 +1,121 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+/**
+ * A system entry: a ticket of NUMBERS_DRAWN..MAX_SYSTEM_NUMBERS numbers, which
+ * stands for every row of NUMBERS_DRAWN numbers picked from it.
+ *
+ * The rows are never enumerated. When the draw has m numbers in common with
+ * the system, exactly C(m, j) * C(s - m, 7 - j) of its C(s, 7) rows have j same
+ * numbers, so the prize tiers of a week follow from m with one table lookup.
+ * The best row always has all the m same numbers, which is why a system entry
+ * wins in the same weeks as a plain ticket with the same matches, and it runs
+ * through the same bitmask hot path.
+ */
+public class SystemTicket {
+
+    /**
+     * The most numbers on a system entry.
+     */
+    public static final int MAX_SYSTEM_NUMBERS = 12;
+
+    private static final int PICKS = DrawMask.NUMBERS_DRAWN;
+
+    private final long mask;
+    private final int size;
+    private final long rows;
+    // tierCounts[m][j]: rows with j same numbers when the system has m same numbers.
+    private final long[][] tierCounts = new long[PICKS + 1][PICKS + 1];
+
+    /**
+     * @param mask the numbers of the entry as a bitmask
+     */
+    public SystemTicket(long mask) {
+        size = DrawMask.size(mask);
+        if (size < PICKS || size > MAX_SYSTEM_NUMBERS) {
+            throw new IllegalArgumentException("A system entry has " + PICKS + ".." + MAX_SYSTEM_NUMBERS
+                + " numbers: " + size);
+        }
+        this.mask = mask;
+        rows = binomial(size, PICKS);
+        for (int m = 0; m <= PICKS; m++) {
+            for (int j = 0; j <= m; j++) {
+                tierCounts[m][j] = binomial(m, j) * binomial(size - m, PICKS - j);
+            }
+        }
+    }
+
+    /**
+     * @return the numbers of the entry as a bitmask
+     */
+    public long getMask() {
+        return mask;
+    }
+
+    /**
+     * @return amount of numbers on the entry
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return amount of rows the entry stands for, C(size, 7)
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns how many rows have the given amount of same numbers.
+     *
+     * @param systemMatches amount of same numbers between the draw and the whole entry
+     * @param rowMatches amount of same numbers on a row, 0..7
+     * @return amount of such rows
+     */
+    public long getRowCount(int systemMatches, int rowMatches) {
+        return tierCounts[systemMatches][rowMatches];
+    }
+
+    /**
+     * Returns how many rows have at least the required amount of same numbers.
+     *
+     * @param systemMatches amount of same numbers between the draw and the whole entry
+     * @param requiredMatches amount of same numbers needed to win
+     * @return amount of winning rows
+     */
+    public long getWinningRows(int systemMatches, int requiredMatches) {
+        long winning = 0;
+        for (int j = requiredMatches; j <= systemMatches; j++) {
+            winning += tierCounts[systemMatches][j];
+        }
+        return winning;
+    }
+
+    /**
+     * Turns the match histogram of the entry, as kept by LottoStatistics, into
+     * the amount of rows in every prize tier over all those weeks.
+     *
+     * @param matchHistogram how many weeks had 0..7 same numbers with the entry
+     * @return how many rows had 0..7 same numbers
+     */
+    public long[] getRowHistogram(long[] matchHistogram) {
+        long[] rowHistogram = new long[PICKS + 1];
+        for (int m = 0; m <= PICKS; m++) {
+            for (int j = 0; j <= m; j++) {
+                rowHistogram[j] += matchHistogram[m] * tierCounts[m][j];
+            }
+        }
+        return rowHistogram;
+    }
+
+    private static long binomial(int n, int k) {
+        if (k < 0 || k > n) {
+            return 0;
+        }
+        long result = 1;
+        for (int i = 1; i <= k; i++) {
+            result = result * (n - k + i) / i;
+        }
+        return result;
+    }
+}
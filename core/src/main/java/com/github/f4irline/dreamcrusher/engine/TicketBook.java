@@ -0,0 +1,234 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import java.util.Arrays;
+
+/**
+ * Matches one draw against a large amount of tickets at once.
+ *
+ * The tickets are kept in an inverted index: for every number there is a
+ * bitset with one bit per ticket. Matching a draw adds up the bitsets of the
+ * 7 drawn numbers in bit-sliced 3-bit counters, so 64 tickets are counted
+ * with a handful of word operations and one week costs O(tickets / 64).
+ * The results are kept bit-sliced as well: reached[k] has the bit of every
+ * ticket which has ever had at least k same numbers.
+ */
+public class TicketBook {
+
+    private final int tickets;
+    private final int words;
+    private final int requiredMatches;
+    private final long[] ticketMasks;
+    private final long[] numberIndex;
+    private final long[][] reached;
+    private final long[] levels = new long[DrawMask.NUMBERS_DRAWN + 1];
+    private final long[] firstWinningWeeks;
+    private int winners;
+    private int weekBestMatch;
+
+    /**
+     * @param ticketMasks the tickets as bitmasks
+     * @param requiredMatches amount of same numbers needed to win
+     */
+    public TicketBook(long[] ticketMasks, int requiredMatches) {
+        if (requiredMatches < 1 || requiredMatches > DrawMask.NUMBERS_DRAWN) {
+            throw new IllegalArgumentException("Invalid amount of required numbers: " + requiredMatches);
+        }
+        this.tickets = ticketMasks.length;
+        this.words = (tickets + 63) >>> 6;
+        this.requiredMatches = requiredMatches;
+        this.ticketMasks = ticketMasks.clone();
+
+        // Indexed by every bit of the mask, so a draw of any game format can be matched.
+        numberIndex = new long[Long.SIZE * words];
+        for (int t = 0; t < tickets; t++) {
+            long remaining = ticketMasks[t];
+            while (remaining != 0) {
+                int number = Long.numberOfTrailingZeros(remaining);
+                numberIndex[number * words + (t >>> 6)] |= 1L << t;
+                remaining &= remaining - 1;
+            }
+        }
+
+        reached = new long[DrawMask.NUMBERS_DRAWN + 1][words];
+        firstWinningWeeks = new long[tickets];
+        Arrays.fill(firstWinningWeeks, -1);
+    }
+
+    /**
+     * Matches the draw against every ticket.
+     *
+     * @param draw the drawn numbers as a bitmask
+     * @param week the index of the week, recorded for the tickets winning for the first time
+     * @return amount of tickets which reached the required amount for the first time
+     */
+    public int match(long draw, long week) {
+        long[] index = numberIndex;
+        long[] levels = this.levels;
+        long[] targetReached = reached[requiredMatches];
+        int newWinners = 0;
+        long anyOne = 0;
+        long anyTwo = 0;
+        long anyThree = 0;
+        long anyFour = 0;
+        long anyFive = 0;
+        long anySix = 0;
+        long anySeven = 0;
+
+        for (int w = 0; w < words; w++) {
+            long bit0 = 0;
+            long bit1 = 0;
+            long bit2 = 0;
+            long remaining = draw;
+            while (remaining != 0) {
+                long hits = index[Long.numberOfTrailingZeros(remaining) * words + w];
+                long carry0 = bit0 & hits;
+                bit0 ^= hits;
+                long carry1 = bit1 & carry0;
+                bit1 ^= carry0;
+                bit2 |= carry1;
+                remaining &= remaining - 1;
+            }
+
+            levels[1] = bit0 | bit1 | bit2;
+            levels[2] = bit1 | bit2;
+            levels[3] = bit2 | (bit1 & bit0);
+            levels[4] = bit2;
+            levels[5] = bit2 & (bit1 | bit0);
+            levels[6] = bit2 & bit1;
+            levels[7] = bit2 & bit1 & bit0;
+
+            anyOne |= levels[1];
+            anyTwo |= levels[2];
+            anyThree |= levels[3];
+            anyFour |= levels[4];
+            anyFive |= levels[5];
+            anySix |= levels[6];
+            anySeven |= levels[7];
+
+            long firstWins = levels[requiredMatches] & ~targetReached[w];
+            for (int k = 1; k < levels.length; k++) {
+                reached[k][w] |= levels[k];
+            }
+            if (firstWins != 0) {
+                newWinners += recordWinners(w, firstWins, week);
+            }
+        }
+        winners += newWinners;
+        weekBestMatch = (anyOne != 0 ? 1 : 0) + (anyTwo != 0 ? 1 : 0) + (anyThree != 0 ? 1 : 0)
+            + (anyFour != 0 ? 1 : 0) + (anyFive != 0 ? 1 : 0) + (anySix != 0 ? 1 : 0) + (anySeven != 0 ? 1 : 0);
+        return newWinners;
+    }
+
+    /**
+     * Matches a block of draws week by week, like {@link BlockKernel} does for a
+     * single ticket, and stops after the week in which the amount of winners
+     * reaches stopWinners, so nothing after the stop is counted.
+     *
+     * @param draws the drawn numbers of the weeks as bitmasks
+     * @param count amount of weeks in the block
+     * @param firstWeek the index of the first week of the block
+     * @param matches receives the most same numbers of any ticket in every week
+     * @param stopWinners amount of winners to stop at, more than size() to match every week
+     * @return amount of weeks matched, count unless stopped
+     */
+    public int matchBlock(long[] draws, int count, long firstWeek, int[] matches, int stopWinners) {
+        for (int i = 0; i < count; i++) {
+            match(draws[i], firstWeek + i);
+            matches[i] = weekBestMatch;
+            if (winners >= stopWinners) {
+                return i + 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the most same numbers any ticket had in the latest matched week.
+     *
+     * @return the best match of the week
+     */
+    public int getWeekBestMatch() {
+        return weekBestMatch;
+    }
+
+    private int recordWinners(int word, long firstWins, long week) {
+        int count = 0;
+        while (firstWins != 0) {
+            firstWinningWeeks[(word << 6) + Long.numberOfTrailingZeros(firstWins)] = week;
+            firstWins &= firstWins - 1;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return amount of tickets
+     */
+    public int size() {
+        return tickets;
+    }
+
+    /**
+     * @param ticket the index of the ticket
+     * @return the ticket as a bitmask
+     */
+    public long getTicket(int ticket) {
+        return ticketMasks[ticket];
+    }
+
+    /**
+     * Returns the most same numbers the ticket has had in any week so far.
+     *
+     * @param ticket the index of the ticket
+     * @return the best match of the ticket
+     */
+    public int getBestMatch(int ticket) {
+        long bit = 1L << ticket;
+        for (int k = DrawMask.NUMBERS_DRAWN; k > 0; k--) {
+            if ((reached[k][ticket >>> 6] & bit) != 0) {
+                return k;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the most same numbers any ticket has had so far.
+     *
+     * @return the best match of all the tickets
+     */
+    public int getBestMatch() {
+        for (int k = DrawMask.NUMBERS_DRAWN; k > 0; k--) {
+            for (long word : reached[k]) {
+                if (word != 0) {
+                    return k;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the first week the ticket had the required amount of same numbers.
+     *
+     * @param ticket the index of the ticket
+     * @return the week, or -1 if the ticket hasn't won yet
+     */
+    public long getFirstWinningWeek(int ticket) {
+        return firstWinningWeeks[ticket];
+    }
+
+    /**
+     * @return amount of tickets which have won at least once
+     */
+    public int getWinnerCount() {
+        return winners;
+    }
+
+    /**
+     * @return true if every ticket has won at least once
+     */
+    public boolean allWon() {
+        return winners == tickets;
+    }
+}
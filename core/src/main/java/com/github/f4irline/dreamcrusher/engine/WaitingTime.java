@@ -0,0 +1,145 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+/**
+ * Samples the week of the first win directly instead of simulating every week.
+ *
+ * The amount of same numbers in one week follows the hypergeometric
+ * distribution, so the chance p of a winning week is known exactly. The weeks
+ * are independent, which makes the amount of losing weeks before the first win
+ * geometric with parameter p, and it can be sampled with one random number.
+ * The winning draw itself is then drawn conditioned on having enough same
+ * numbers. The result is distributed exactly like a brute force simulation's.
+ */
+public class WaitingTime {
+
+    private final int requiredMatches;
+    private final double[] matchProbabilities;
+    private final double winProbability;
+    private final double logLoseProbability;
+
+    /**
+     * @param ticketSize amount of numbers on the ticket
+     * @param requiredMatches amount of same numbers needed to win
+     */
+    public WaitingTime(int ticketSize, int requiredMatches) {
+        if (ticketSize < 1 || ticketSize > DrawMask.MAX_NUMBER) {
+            throw new IllegalArgumentException("Invalid ticket size: " + ticketSize);
+        }
+        int maxMatches = Math.min(ticketSize, DrawMask.NUMBERS_DRAWN);
+        if (requiredMatches < 1 || requiredMatches > maxMatches) {
+            throw new IllegalArgumentException("Cannot get " + requiredMatches + " same numbers with "
+                + ticketSize + " numbers");
+        }
+        this.requiredMatches = requiredMatches;
+
+        matchProbabilities = new double[DrawMask.NUMBERS_DRAWN + 1];
+        double combinations = binomial(DrawMask.MAX_NUMBER, DrawMask.NUMBERS_DRAWN);
+        double win = 0;
+        for (int m = 0; m <= DrawMask.NUMBERS_DRAWN; m++) {
+            matchProbabilities[m] = binomial(ticketSize, m)
+                * binomial(DrawMask.MAX_NUMBER - ticketSize, DrawMask.NUMBERS_DRAWN - m) / combinations;
+            if (m >= requiredMatches) {
+                win += matchProbabilities[m];
+            }
+        }
+        winProbability = win;
+        logLoseProbability = Math.log1p(-win);
+    }
+
+    /**
+     * Returns the chance of one week having at least the required amount of same numbers.
+     *
+     * @return the probability of a winning week
+     */
+    public double getWinProbability() {
+        return winProbability;
+    }
+
+    /**
+     * Returns the chance of one week having exactly the given amount of same numbers.
+     *
+     * @param matches amount of same numbers, 0..7
+     * @return the probability
+     */
+    public double getMatchProbability(int matches) {
+        return matchProbabilities[matches];
+    }
+
+    /**
+     * Samples the index of the first winning week, starting from 0.
+     *
+     * @param random the source of the random numbers
+     * @return the amount of losing weeks before the first win
+     */
+    public long sampleWinningWeek(RandomSource random) {
+        if (winProbability >= 1) {
+            return 0;
+        }
+        // 1 - nextDouble() is in (0, 1], so the logarithm is always finite.
+        double u = 1.0 - random.nextDouble();
+        return (long) Math.floor(Math.log(u) / logLoseProbability);
+    }
+
+    /**
+     * Draws a winning week's numbers, i.e. a uniformly random draw
+     * among the draws with at least the required amount of same numbers.
+     *
+     * @param random the source of the random numbers
+     * @param ticketMask the user selection as a bitmask
+     * @return the drawn numbers as a bitmask
+     */
+    public long sampleWinningDraw(RandomSource random, long ticketMask) {
+        // First the amount of same numbers, from the distribution conditioned on winning.
+        double u = random.nextDouble() * winProbability;
+        int matches = DrawMask.NUMBERS_DRAWN;
+        for (int m = requiredMatches; m <= DrawMask.NUMBERS_DRAWN; m++) {
+            u -= matchProbabilities[m];
+            if (u < 0 && matchProbabilities[m] > 0) {
+                matches = m;
+                break;
+            }
+        }
+        while (matchProbabilities[matches] == 0) {
+            matches--;
+        }
+
+        long allNumbers = ((1L << (DrawMask.MAX_NUMBER + 1)) - 1) & ~1L;
+        return selectBits(random, ticketMask, matches)
+            | selectBits(random, allNumbers & ~ticketMask, DrawMask.NUMBERS_DRAWN - matches);
+    }
+
+    /**
+     * Picks k of the set bits of the pool uniformly at random.
+     */
+    private static long selectBits(RandomSource random, long pool, int k) {
+        int size = Long.bitCount(pool);
+        // Floyd's algorithm on the positions 0..size-1 of the pool's set bits.
+        long positions = 0L;
+        for (int j = size - k; j < size; j++) {
+            long bit = 1L << random.nextInt(j + 1);
+            positions |= (positions & bit) == 0 ? bit : 1L << j;
+        }
+
+        long selected = 0L;
+        long remaining = pool;
+        for (int i = 0; remaining != 0; i++) {
+            long lowest = remaining & -remaining;
+            if ((positions & (1L << i)) != 0) {
+                selected |= lowest;
+            }
+            remaining ^= lowest;
+        }
+        return selected;
+    }
+
+    static double binomial(int n, int k) {
+        if (k < 0 || k > n) {
+            return 0;
+        }
+        double result = 1;
+        for (int i = 1; i <= k; i++) {
+            result = result * (n - k + i) / i;
+        }
+        return result;
+    }
+}
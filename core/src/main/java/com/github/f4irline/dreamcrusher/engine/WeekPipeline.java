@@ -0,0 +1,354 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import com.github.f4irline.dreamcrusher.LottoLogic;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the weeks as a pipeline of three stages on their own threads: the
+ * generator draws the numbers, the matcher compares them with the tickets,
+ * and the publisher, which is the thread calling {@link #poll}, records the
+ * statistics and publishes the progress.
+ *
+ * The stages are connected by {@link LongRingBuffer}s of the draw masks, so
+ * nothing is locked or allocated per week. A full queue makes its producer
+ * back off until the consumer catches up, which keeps the memory use bounded
+ * and runs the pipeline at the speed of its slowest stage. The draws come from
+ * one LottoLogic in order, so the weeks are the same as on a single thread.
+ * The generator runs ahead of the published weeks by up to the capacities of
+ * the queues, which is why the state of the random numbers can't be saved
+ * along with the statistics of a pipelined run.
+ */
+public class WeekPipeline {
+
+    /**
+     * The default capacity of the queues, in weeks.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * Most weeks a stage moves from its queue at once.
+     */
+    public static final int BATCH_WEEKS = 256;
+
+    /**
+     * Set in the match result of the week which won.
+     */
+    private static final long WON = 1L << 32;
+
+    private static final int SPINS = 100;
+    private static final int YIELDS = 10;
+    private static final long PARK_NANOS = 50000;
+
+    /**
+     * Compares the draws with the tickets. Only called from the matcher thread.
+     */
+    public interface Matcher {
+        /**
+         * @param draw the drawn numbers as a bitmask
+         * @param week the index of the week
+         * @return amount of same numbers in the week
+         */
+        int match(long draw, long week);
+
+        /**
+         * @return true once the latest matched week has won
+         */
+        boolean hasWon();
+    }
+
+    private final LottoLogic lottoLogic;
+    private final Matcher matcher;
+    private final long firstWeek;
+    private final LongRingBuffer draws;
+    // Two longs per week: the draw and the match result.
+    private final LongRingBuffer matches;
+
+    private volatile boolean stopped;
+    private volatile boolean matcherDone;
+    private Thread generatorThread;
+    private Thread matcherThread;
+
+    // Guarded by this, the counts of the previous dump.
+    private long dumpNanos;
+    private long dumpGenerated;
+    private long dumpMatched;
+    private long dumpPublished;
+
+    /**
+     * @param lottoLogic the engine which draws the numbers, only used by the generator from now on
+     * @param matcher the matcher of the draws, only used by the matcher from now on
+     * @param firstWeek the index of the first week
+     * @param capacity the capacity of each queue in weeks, a power of two
+     */
+    public WeekPipeline(LottoLogic lottoLogic, Matcher matcher, long firstWeek, int capacity) {
+        this.lottoLogic = lottoLogic;
+        this.matcher = matcher;
+        this.firstWeek = firstWeek;
+        draws = new LongRingBuffer(capacity);
+        matches = new LongRingBuffer(2 * capacity);
+    }
+
+    /**
+     * Returns a matcher of one ticket.
+     *
+     * @param ticketMask the ticket as a bitmask
+     * @param requiredMatches amount of same numbers needed to win
+     * @return the matcher
+     */
+    public static Matcher singleTicket(final long ticketMask, final int requiredMatches) {
+        return new Matcher() {
+            private boolean won;
+
+            @Override
+            public int match(long draw, long week) {
+                int sameNumbers = Long.bitCount(draw & ticketMask);
+                won = sameNumbers >= requiredMatches;
+                return sameNumbers;
+            }
+
+            @Override
+            public boolean hasWon() {
+                return won;
+            }
+        };
+    }
+
+    /**
+     * Returns a matcher of a syndicate, which wins once every ticket has.
+     *
+     * @param ticketBook the tickets of the syndicate
+     * @return the matcher
+     */
+    public static Matcher ticketBook(final TicketBook ticketBook) {
+        return new Matcher() {
+            @Override
+            public int match(long draw, long week) {
+                return ticketBook.match(draw, week);
+            }
+
+            @Override
+            public boolean hasWon() {
+                return ticketBook.allWon();
+            }
+        };
+    }
+
+    /**
+     * Starts the generator and the matcher threads. Can only be called once.
+     */
+    public void start() {
+        if (generatorThread != null) {
+            throw new IllegalStateException("Pipeline already started");
+        }
+        generatorThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                generate();
+            }
+        }, "lotto-generator");
+        matcherThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    match();
+                } finally {
+                    matcherDone = true;
+                }
+            }
+        }, "lotto-matcher");
+        generatorThread.setDaemon(true);
+        matcherThread.setDaemon(true);
+        synchronized (this) {
+            dumpNanos = System.nanoTime();
+        }
+        generatorThread.start();
+        matcherThread.start();
+    }
+
+    /**
+     * Stops the generator and the matcher and waits for their threads to end.
+     * Weeks which are still in the queues are left out.
+     */
+    public void stop() {
+        stopped = true;
+        try {
+            if (generatorThread != null) {
+                generatorThread.join();
+                matcherThread.join();
+            }
+        } catch (InterruptedException e) {
+            // They end on their own within a back off.
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Moves the oldest matched weeks to the array, the draw of week i to
+     * index 2 * i and its match result to index 2 * i + 1. Only call from
+     * the publisher thread.
+     *
+     * @param weeks the array to move the weeks to, at least 2 * maxWeeks long
+     * @param maxWeeks the most weeks to move
+     * @return amount of weeks moved, 0 if none are ready
+     */
+    public int poll(long[] weeks, int maxWeeks) {
+        return matches.drainTo(weeks, 2 * maxWeeks) / 2;
+    }
+
+    /**
+     * @param result a match result from {@link #poll}
+     * @return amount of same numbers in the week
+     */
+    public static int getSameNumbers(long result) {
+        return (int) result;
+    }
+
+    /**
+     * @param result a match result from {@link #poll}
+     * @return true if the week won, it is the last week of the pipeline
+     */
+    public static boolean hasWon(long result) {
+        return (result & WON) != 0;
+    }
+
+    /**
+     * Checks if the matcher has stopped and every matched week has been polled.
+     *
+     * @return true if no more weeks will come
+     */
+    public boolean isDone() {
+        return matcherDone && matches.size() == 0;
+    }
+
+    /**
+     * Waits a little after finding a queue empty or full: spins at first,
+     * then yields the processor, then sleeps for PARK_NANOS at a time.
+     *
+     * @param misses how many times in a row the queue has been empty or full
+     */
+    public static void backOff(int misses) {
+        if (misses < SPINS) {
+            return;
+        }
+        if (misses < SPINS + YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    private void generate() {
+        int misses = 0;
+        while (!stopped) {
+            long draw = lottoLogic.draw();
+            while (!draws.offer(draw)) {
+                if (stopped) {
+                    return;
+                }
+                backOff(misses++);
+            }
+            misses = 0;
+        }
+    }
+
+    private void match() {
+        long[] batch = new long[BATCH_WEEKS];
+        long week = firstWeek;
+        int misses = 0;
+        while (!stopped) {
+            int count = draws.drainTo(batch, BATCH_WEEKS);
+            if (count == 0) {
+                backOff(misses++);
+                continue;
+            }
+            misses = 0;
+            for (int i = 0; i < count; i++) {
+                long draw = batch[i];
+                long result = matcher.match(draw, week++);
+                boolean won = matcher.hasWon();
+                if (won) {
+                    result |= WON;
+                }
+                while (!matches.offer(draw, result)) {
+                    if (stopped) {
+                        return;
+                    }
+                    backOff(misses++);
+                }
+                misses = 0;
+                if (won) {
+                    // Nothing after the winning week is needed.
+                    stopped = true;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return amount of weeks drawn by the generator
+     */
+    public long getGeneratedWeeks() {
+        return draws.getProduced();
+    }
+
+    /**
+     * @return amount of weeks matched by the matcher
+     */
+    public long getMatchedWeeks() {
+        return matches.getProduced() / 2;
+    }
+
+    /**
+     * @return amount of weeks polled by the publisher
+     */
+    public long getPublishedWeeks() {
+        return matches.getConsumed() / 2;
+    }
+
+    /**
+     * @return the queue from the generator to the matcher, one long per week
+     */
+    public LongRingBuffer getDrawQueue() {
+        return draws;
+    }
+
+    /**
+     * @return the queue from the matcher to the publisher, two longs per week
+     */
+    public LongRingBuffer getMatchQueue() {
+        return matches;
+    }
+
+    /**
+     * Writes the throughput of every stage since the previous dump, the
+     * occupancy of the queues in weeks, and how often the queues were full
+     * (the consumer is the bottleneck) or empty (the producer is).
+     *
+     * @param writer the writer to write to
+     */
+    public synchronized void dump(PrintWriter writer) {
+        long now = System.nanoTime();
+        long generated = getGeneratedWeeks();
+        long matched = getMatchedWeeks();
+        long published = getPublishedWeeks();
+        double seconds = Math.max(now - dumpNanos, 1) / 1e9;
+
+        writer.println(String.format(Locale.US, "generator: weeks=%d %.0f weeks/s, queue %d/%d weeks, full %d",
+            generated, (generated - dumpGenerated) / seconds, draws.size(), draws.getCapacity(),
+            draws.getFullOffers()));
+        writer.println(String.format(Locale.US, "matcher: weeks=%d %.0f weeks/s, empty %d, queue %d/%d weeks, full %d",
+            matched, (matched - dumpMatched) / seconds, draws.getEmptyPolls(), matches.size() / 2,
+            matches.getCapacity() / 2, matches.getFullOffers()));
+        writer.println(String.format(Locale.US, "publisher: weeks=%d %.0f weeks/s, empty %d",
+            published, (published - dumpPublished) / seconds, matches.getEmptyPolls()));
+
+        dumpNanos = now;
+        dumpGenerated = generated;
+        dumpMatched = matched;
+        dumpPublished = published;
+    }
+}
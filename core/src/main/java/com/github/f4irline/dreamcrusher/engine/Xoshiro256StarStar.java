@@ -0,0 +1,56 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+/**
+ * The xoshiro256** generator by Blackman and Vigna.
+ *
+ * 256 bits of state, so it has a far longer period than SplitMix64 while
+ * being about as fast. The state is filled from a SplitMix64 seeded with
+ * the given seed, as recommended by the authors.
+ */
+public final class Xoshiro256StarStar extends AbstractRandomSource {
+
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+
+    /**
+     * @param seed the seed
+     */
+    public Xoshiro256StarStar(long seed) {
+        SplitMix64 seeder = new SplitMix64(seed);
+        s0 = seeder.nextLong();
+        s1 = seeder.nextLong();
+        s2 = seeder.nextLong();
+        s3 = seeder.nextLong();
+    }
+
+    @Override
+    public long nextLong() {
+        long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    @Override
+    public void saveState(long[] state) {
+        state[0] = s0;
+        state[1] = s1;
+        state[2] = s2;
+        state[3] = s3;
+    }
+
+    @Override
+    public void restoreState(long[] state) {
+        s0 = state[0];
+        s1 = state[1];
+        s2 = state[2];
+        s3 = state[3];
+    }
+}
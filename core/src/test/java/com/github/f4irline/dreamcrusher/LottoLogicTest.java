@@ -0,0 +1,215 @@
+package com.github.f4irline.dreamcrusher;
+
+import com.github.f4irline.dreamcrusher.engine.BlockKernel;
+import com.github.f4irline.dreamcrusher.engine.DrawMask;
+import com.github.f4irline.dreamcrusher.engine.DrawSampler;
+import com.github.f4irline.dreamcrusher.engine.LottoStatistics;
+import com.github.f4irline.dreamcrusher.engine.ParallelSimulation;
+import com.github.f4irline.dreamcrusher.engine.RandomSource;
+import com.github.f4irline.dreamcrusher.engine.RandomSourceType;
+import com.github.f4irline.dreamcrusher.engine.SplitMix64;
+import com.github.f4irline.dreamcrusher.engine.WaitingTime;
+import com.github.f4irline.dreamcrusher.engine.WeekPipeline;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the lotto engine, replaying seeded runs.
+ */
+public class LottoLogicTest {
+    private static final long SEED = 20190128L;
+    private static final long TICKET = DrawMask.fromNumbers(Arrays.asList(3, 8, 15, 16, 23, 34, 40));
+
+    @Test
+    public void seededSources_replayWeekForWeek() {
+        for (RandomSourceType type : RandomSourceType.values()) {
+            long[] firstRun = drawWeeks(new LottoLogic(type.create(SEED)), 1000);
+            long[] secondRun = drawWeeks(new LottoLogic(type.create(SEED)), 1000);
+            assertArrayEquals(firstRun, secondRun);
+        }
+    }
+
+    @Test
+    public void instances_doNotShareState() {
+        LottoLogic first = new LottoLogic(RandomSourceType.SPLITMIX.create(SEED));
+        LottoLogic second = new LottoLogic(RandomSourceType.SPLITMIX.create(SEED));
+        long[] expected = drawWeeks(new LottoLogic(RandomSourceType.SPLITMIX.create(SEED)), 100);
+
+        // Interleaving the two engines must not change what either of them draws.
+        for (int week = 0; week < 100; week++) {
+            assertEquals(expected[week], first.draw());
+            assertEquals(expected[week], second.draw());
+            assertEquals(7, first.countMatches(second.getDrawMask()));
+        }
+    }
+
+    @Test
+    public void blockEngine_recordsTheSameWeeksAsTheReference() {
+        int weeks = 3 * 4096 + 123;
+        for (RandomSourceType type : RandomSourceType.values()) {
+            LottoLogic reference = new LottoLogic(type.create(SEED));
+            LottoStatistics expected = new LottoStatistics(5);
+            for (int week = 0; week < weeks; week++) {
+                reference.draw();
+                expected.record(reference.getDrawMask(), reference.countMatches(TICKET));
+            }
+
+            LottoLogic blocks = new LottoLogic(type.create(SEED));
+            LottoStatistics actual = new LottoStatistics(5);
+            long[] draws = new long[4096];
+            int[] matches = new int[4096];
+            for (int start = 0; start < weeks; start += draws.length) {
+                int count = Math.min(draws.length, weeks - start);
+                blocks.drawBlock(draws, count);
+                BlockKernel.match(draws, count, TICKET, matches);
+                actual.recordBlock(draws, matches, count);
+            }
+
+            assertArrayEquals(type.toString(), bytesOf(expected), bytesOf(actual));
+        }
+    }
+
+    @Test
+    public void pipeline_winsInTheSameWeekAsTheReference() {
+        long expected = firstWin(new LottoLogic(RandomSourceType.REFERENCE.create(SEED)), 5);
+        WeekPipeline pipeline = new WeekPipeline(new LottoLogic(RandomSourceType.REFERENCE.create(SEED)),
+            WeekPipeline.singleTicket(TICKET, 5), 0, 64);
+        pipeline.start();
+
+        long[] weeks = new long[2 * WeekPipeline.BATCH_WEEKS];
+        long week = 0;
+        long winningWeek = -1;
+        int misses = 0;
+        while (winningWeek < 0) {
+            int count = pipeline.poll(weeks, WeekPipeline.BATCH_WEEKS);
+            if (count == 0) {
+                assertFalse(pipeline.isDone());
+                WeekPipeline.backOff(misses++);
+                continue;
+            }
+            misses = 0;
+            for (int i = 0; i < count; i++, week++) {
+                if (WeekPipeline.hasWon(weeks[2 * i + 1])) {
+                    winningWeek = week;
+                }
+            }
+        }
+        pipeline.stop();
+
+        assertEquals(expected, winningWeek);
+    }
+
+    @Test
+    public void parallelSimulation_matchesTheReferenceReseededPerBlock() throws InterruptedException {
+        // Every block of the parallel run draws from its own split stream of the seed.
+        SplitMix64 random = new SplitMix64(0);
+        LottoLogic reference = new LottoLogic(random);
+        LottoStatistics expected = new LottoStatistics(6);
+        long winningWeek = -1;
+        long winningDraw = 0;
+        for (long block = 0; winningWeek < 0; block++) {
+            random.seedStream(SEED, block);
+            for (int i = 0; i < ParallelSimulation.BLOCK_WEEKS && winningWeek < 0; i++) {
+                long draw = reference.draw();
+                int sameNumbers = reference.countMatches(TICKET);
+                expected.record(draw, sameNumbers);
+                if (sameNumbers >= 6) {
+                    winningWeek = block * ParallelSimulation.BLOCK_WEEKS + i;
+                    winningDraw = draw;
+                }
+            }
+        }
+
+        ParallelSimulation simulation = new ParallelSimulation(TICKET, 6, SEED, 3, Long.MAX_VALUE);
+        simulation.start();
+        ParallelSimulation.Result result = simulation.awaitResult(1, TimeUnit.MINUTES);
+
+        assertEquals(winningWeek, result.getFirstWinningWeek());
+        assertEquals(winningDraw, result.getWinningDraw());
+        assertArrayEquals(expected.getHistogram(), result.getHistogram());
+        for (int number = 1; number <= DrawMask.MAX_NUMBER; number++) {
+            assertEquals(expected.getNumberFrequency(number), result.getStatistics().getNumberFrequency(number));
+        }
+    }
+
+    @Test
+    public void everySource_drawsEveryNumberEquallyOften() {
+        int draws = 200000;
+        for (RandomSourceType type : RandomSourceType.values()) {
+            DrawSampler sampler = new DrawSampler(DrawMask.MAX_NUMBER, DrawMask.NUMBERS_DRAWN);
+            RandomSource random = type.create(SEED);
+            long[] counts = new long[DrawMask.MAX_NUMBER + 1];
+            for (int i = 0; i < draws; i++) {
+                long draw = sampler.draw(random);
+                for (int n = 1; n <= DrawMask.MAX_NUMBER; n++) {
+                    counts[n] += (draw >>> n) & 1;
+                }
+            }
+
+            // Chi-square with 39 degrees of freedom, 72.05 is the 0.1 % tail.
+            double expected = draws * (double) DrawMask.NUMBERS_DRAWN / DrawMask.MAX_NUMBER;
+            double chiSquare = 0;
+            for (int n = 1; n <= DrawMask.MAX_NUMBER; n++) {
+                chiSquare += (counts[n] - expected) * (counts[n] - expected) / expected;
+            }
+            assertTrue(type + " chi-square " + chiSquare, chiSquare < 72.05);
+        }
+    }
+
+    @Test
+    public void everySource_matchesLikeTheHypergeometricDistribution() {
+        int weeks = 200000;
+        WaitingTime waitingTime = new WaitingTime(DrawMask.NUMBERS_DRAWN, DrawMask.NUMBERS_DRAWN);
+        for (RandomSourceType type : RandomSourceType.values()) {
+            LottoLogic lottoLogic = new LottoLogic(type.create(SEED));
+            // 5, 6 and 7 same numbers are too rare to count apart.
+            long[] counts = new long[6];
+            for (int week = 0; week < weeks; week++) {
+                lottoLogic.draw();
+                counts[Math.min(lottoLogic.countMatches(TICKET), 5)]++;
+            }
+
+            // Chi-square with 5 degrees of freedom, 20.52 is the 0.1 % tail.
+            double chiSquare = 0;
+            for (int m = 0; m < counts.length; m++) {
+                double probability = 0;
+                for (int matches = m; matches <= (m < 5 ? m : DrawMask.NUMBERS_DRAWN); matches++) {
+                    probability += waitingTime.getMatchProbability(matches);
+                }
+                double expected = weeks * probability;
+                chiSquare += (counts[m] - expected) * (counts[m] - expected) / expected;
+            }
+            assertTrue(type + " chi-square " + chiSquare, chiSquare < 20.52);
+        }
+    }
+
+    private static long firstWin(LottoLogic lottoLogic, int requiredMatches) {
+        for (long week = 0; ; week++) {
+            lottoLogic.draw();
+            if (lottoLogic.countMatches(TICKET) >= requiredMatches) {
+                return week;
+            }
+        }
+    }
+
+    private static byte[] bytesOf(LottoStatistics statistics) {
+        ByteBuffer buffer = ByteBuffer.allocate(LottoStatistics.BYTES);
+        statistics.writeTo(buffer);
+        return buffer.array();
+    }
+
+    private static long[] drawWeeks(LottoLogic lottoLogic, int weeks) {
+        long[] draws = new long[weeks];
+        for (int i = 0; i < weeks; i++) {
+            draws[i] = lottoLogic.draw();
+            assertEquals(7, Long.bitCount(draws[i]));
+        }
+        return draws;
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import com.github.f4irline.dreamcrusher.LottoLogic;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the block at a time drawing, matching and recording.
+ */
+public class BlockKernelTest {
+    private static final long TICKET = DrawMask.fromNumbers(Arrays.asList(3, 8, 15, 16, 23, 34, 40));
+
+    @Test
+    public void drawBlock_drawsTheSameWeeksAsDraw() {
+        for (GameFormat format : GameFormat.presets()) {
+            LottoLogic weekly = new LottoLogic(new SplitMix64(9), format);
+            LottoLogic blocks = new LottoLogic(new SplitMix64(9), format);
+            long[] draws = new long[100];
+            blocks.drawBlock(draws, draws.length);
+
+            for (long draw : draws) {
+                assertEquals(format.toString(), weekly.draw(), draw);
+            }
+            assertEquals(draws[99], blocks.getDrawMask());
+        }
+    }
+
+    @Test
+    public void match_countsEveryWeekAndTheBest() {
+        long[] draws = new long[1000];
+        new DrawSampler(DrawMask.MAX_NUMBER, DrawMask.NUMBERS_DRAWN).drawBlock(new SplitMix64(4), draws, 1000);
+        int[] single = new int[1000];
+
+        int best = BlockKernel.match(draws, 1000, TICKET, single);
+
+        int expectedBest = 0;
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(DrawMask.matches(draws[i], TICKET), single[i]);
+            expectedBest = Math.max(expectedBest, single[i]);
+        }
+        assertEquals(expectedBest, best);
+        assertEquals(-1, BlockKernel.firstWin(single, 1000, best + 1));
+        assertEquals(best, single[BlockKernel.firstWin(single, 1000, best)]);
+    }
+
+    @Test
+    public void ticketBook_matchesBlocksLikeEveryWeek() {
+        long other = DrawMask.fromNumbers(Arrays.asList(1, 2, 4, 5, 6, 7, 9));
+        long[] draws = new long[1000];
+        new DrawSampler(DrawMask.MAX_NUMBER, DrawMask.NUMBERS_DRAWN).drawBlock(new SplitMix64(5), draws, 1000);
+        TicketBook weekly = new TicketBook(new long[] {TICKET, other}, 4);
+        TicketBook blocks = new TicketBook(new long[] {TICKET, other}, 4);
+        int[] matches = new int[1000];
+
+        int weeks = blocks.matchBlock(draws, 1000, 0, matches, 2);
+        for (int i = 0; i < weeks; i++) {
+            weekly.match(draws[i], i);
+            assertEquals(weekly.getWeekBestMatch(), matches[i]);
+        }
+        // Stopped in the week the last ticket won.
+        assertTrue(blocks.allWon());
+        assertTrue(weeks < 1000);
+        for (int t = 0; t < 2; t++) {
+            assertEquals(weekly.getFirstWinningWeek(t), blocks.getFirstWinningWeek(t));
+            assertEquals(weekly.getBestMatch(t), blocks.getBestMatch(t));
+        }
+        assertEquals(weeks - 1, Math.max(blocks.getFirstWinningWeek(0), blocks.getFirstWinningWeek(1)));
+    }
+
+    @Test
+    public void recordBlock_recordsLikeEveryWeek() {
+        long[] draws = new long[500];
+        int[] matches = new int[500];
+        new LottoLogic(new SplitMix64(6)).drawBlock(draws, 500);
+        BlockKernel.match(draws, 500, TICKET, matches);
+        LottoStatistics weekly = new LottoStatistics(2);
+        LottoStatistics blocks = new LottoStatistics(2);
+
+        for (int i = 0; i < 500; i++) {
+            weekly.record(draws[i], matches[i]);
+        }
+        blocks.recordBlock(draws, matches, 500);
+
+        ByteBuffer expected = ByteBuffer.allocate(LottoStatistics.BYTES);
+        ByteBuffer actual = ByteBuffer.allocate(LottoStatistics.BYTES);
+        weekly.writeTo(expected);
+        blocks.writeTo(actual);
+        assertArrayEquals(expected.array(), actual.array());
+    }
+}
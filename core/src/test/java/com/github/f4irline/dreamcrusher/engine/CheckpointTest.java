@@ -0,0 +1,87 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the checkpoints and the saved random states.
+ */
+public class CheckpointTest {
+    @Test
+    public void resumedRun_drawsTheSameAsUninterrupted() throws IOException {
+        for (RandomSourceType type : RandomSourceType.values()) {
+            DrawSampler sampler = new DrawSampler(40, 7);
+            RandomSource random = type.create(42);
+            LottoStatistics statistics = new LottoStatistics(5);
+            long ticket = sampler.draw(random);
+            for (int week = 0; week < 1000; week++) {
+                long draw = sampler.draw(random);
+                statistics.record(draw, DrawMask.matches(draw, ticket));
+            }
+
+            Checkpoint checkpoint = new Checkpoint(type, 42, random, statistics, ticket);
+            checkpoint.setWeeks(1000);
+            ByteBuffer buffer = ByteBuffer.allocate(Checkpoint.BYTES);
+            checkpoint.writeTo(buffer);
+            assertEquals(Checkpoint.BYTES, buffer.position());
+            buffer.flip();
+            Checkpoint resumed = Checkpoint.readFrom(buffer);
+
+            assertEquals(type, resumed.getRandomSourceType());
+            assertEquals(ticket, resumed.getSelectionMask());
+            assertEquals(5, resumed.getRequiredMatches());
+            assertEquals(1000, resumed.getWeeks());
+            assertEquals(statistics.getHits(), resumed.getStatistics().getHits());
+            assertEquals(statistics.getPairCount(3, 17), resumed.getStatistics().getPairCount(3, 17));
+            for (int week = 0; week < 1000; week++) {
+                assertEquals(sampler.draw(random), sampler.draw(resumed.getRandomSource()));
+            }
+        }
+    }
+
+    @Test
+    public void writer_skipsCapturesAfterDeleteUntilEnabled() throws IOException {
+        File file = File.createTempFile("lotto", ".checkpoint");
+        CheckpointWriter writer = new CheckpointWriter(file);
+        Checkpoint checkpoint = new Checkpoint(RandomSourceType.SPLITMIX, 1, new SplitMix64(1),
+            new LottoStatistics(7), DrawMask.bit(1));
+        try {
+            writer.delete();
+            assertFalse(writer.capture(checkpoint));
+            writer.enable();
+            assertTrue(writer.capture(checkpoint));
+        } finally {
+            writer.delete();
+            writer.shutdown();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void damagedCheckpoint_isRejected() throws IOException {
+        Checkpoint checkpoint = new Checkpoint(RandomSourceType.SPLITMIX, 1, new SplitMix64(1),
+            new LottoStatistics(7), 0L);
+        ByteBuffer buffer = ByteBuffer.allocate(Checkpoint.BYTES);
+        checkpoint.writeTo(buffer);
+        buffer.put(100, (byte) (buffer.get(100) ^ 1));
+        buffer.flip();
+        Checkpoint.readFrom(buffer);
+    }
+
+    @Test
+    public void referenceSource_matchesJavaUtilRandom() {
+        RandomSource source = new JdkRandomSource(7);
+        Random random = new Random(7);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(random.nextInt(40), source.nextInt(40));
+            assertEquals(random.nextInt(64), source.nextInt(64));
+            assertEquals(random.nextLong(), source.nextLong());
+            assertEquals(random.nextDouble(), source.nextDouble(), 0.0);
+        }
+    }
+}
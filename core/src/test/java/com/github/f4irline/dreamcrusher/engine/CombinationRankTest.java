@@ -0,0 +1,55 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the combination ranking and the seen-combination bitmap.
+ */
+public class CombinationRankTest {
+    @Test
+    public void rank_coversEveryCombinationOnce() {
+        assertEquals(18643560, CombinationRank.COMBINATIONS);
+        assertEquals(0, CombinationRank.rank(DrawMask.fromNumbers(Arrays.asList(1, 2, 3, 4, 5, 6, 7))));
+        assertEquals(CombinationRank.COMBINATIONS - 1,
+            CombinationRank.rank(DrawMask.fromNumbers(Arrays.asList(34, 35, 36, 37, 38, 39, 40))));
+    }
+
+    @Test
+    public void unrank_reversesRank() {
+        DrawSampler sampler = new DrawSampler(40, 7);
+        RandomSource random = new SplitMix64(5);
+        for (int i = 0; i < 10000; i++) {
+            long draw = sampler.draw(random);
+            assertEquals(draw, CombinationRank.unrank(CombinationRank.rank(draw)));
+        }
+        for (int rank = 0; rank < CombinationRank.COMBINATIONS; rank += 9973) {
+            assertEquals(rank, CombinationRank.rank(CombinationRank.unrank(rank)));
+        }
+    }
+
+    @Test
+    public void bitmap_findsTheFirstRepeat() {
+        CombinationBitmap bitmap = new CombinationBitmap();
+        long first = DrawMask.fromNumbers(Arrays.asList(3, 8, 15, 16, 23, 34, 40));
+        long second = DrawMask.fromNumbers(Arrays.asList(1, 8, 15, 16, 23, 34, 40));
+
+        assertTrue(bitmap.record(first, 0));
+        assertTrue(bitmap.record(second, 1));
+        assertFalse(bitmap.record(first, 2));
+        assertFalse(bitmap.record(second, 3));
+
+        assertEquals(2, bitmap.getDistinct());
+        assertEquals(2, bitmap.getFirstRepeatWeek());
+        assertEquals(first, bitmap.getFirstRepeatDraw());
+        assertTrue(bitmap.contains(second));
+
+        bitmap.clear();
+        assertEquals(0, bitmap.getDistinct());
+        assertEquals(-1, bitmap.getFirstRepeatWeek());
+        assertFalse(bitmap.contains(first));
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the draw history log.
+ */
+public class DrawHistoryTest {
+    @Test
+    public void reader_returnsEveryWrittenDraw() throws Exception {
+        File file = File.createTempFile("history", ".bin");
+        try {
+            int weeks = 200000;
+            long[] draws = new long[weeks];
+            DrawSampler sampler = new DrawSampler(40, 7);
+            RandomSource random = new SplitMix64(3);
+            DrawHistoryWriter writer = new DrawHistoryWriter(file);
+            for (int week = 0; week < weeks; week++) {
+                draws[week] = sampler.draw(random);
+                writer.append(draws[week]);
+            }
+            writer.close();
+            assertEquals(weeks * 5L, file.length());
+
+            DrawHistoryReader reader = new DrawHistoryReader(file);
+            assertEquals(weeks, reader.getWeeks());
+            for (int week = 0; week < weeks; week += 997) {
+                assertEquals(draws[week], reader.get(week));
+            }
+            assertEquals(draws[weeks - 1], reader.get(weeks - 1));
+
+            long target = draws[123456];
+            long expected = 123456;
+            for (int week = 0; week < 123456; week++) {
+                if (draws[week] == target) {
+                    expected = week;
+                    break;
+                }
+            }
+            assertEquals(expected, reader.findFirst(target, 0));
+            assertEquals(-1, reader.findFirst(DrawMask.fromNumbers(java.util.Arrays.asList(1, 2, 3, 4, 5, 6, 7)), weeks));
+            reader.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void reader_leavesOutPartlyWrittenWeek() throws Exception {
+        File file = File.createTempFile("history", ".bin");
+        try {
+            long draw = DrawMask.fromNumbers(java.util.Arrays.asList(2, 9, 14, 22, 31, 38, 40));
+            DrawHistoryWriter writer = new DrawHistoryWriter(file);
+            writer.append(draw);
+            writer.close();
+            FileOutputStream output = new FileOutputStream(file, true);
+            output.write(new byte[] {1, 2});
+            output.close();
+
+            DrawHistoryReader reader = new DrawHistoryReader(file);
+            assertEquals(1, reader.getWeeks());
+            assertEquals(draw, reader.get(0));
+            reader.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void writer_closesOnceAfterInterruptedFlush() throws Exception {
+        File file = File.createTempFile("history", ".bin");
+        try {
+            DrawHistoryWriter writer = new DrawHistoryWriter(file);
+            writer.append(DrawMask.fromNumbers(java.util.Arrays.asList(1, 2, 3, 4, 5, 6, 7)));
+            writer.append(DrawMask.fromNumbers(java.util.Arrays.asList(2, 9, 14, 22, 31, 38, 40)));
+            Thread.currentThread().interrupt();
+            try {
+                writer.flush();
+                fail("The flush wasn't interrupted");
+            } catch (InterruptedException expected) {
+                // The flag is cleared, so close can wait for the write.
+            }
+            writer.close();
+            assertEquals(2 * DrawHistoryWriter.RECORD_BYTES, file.length());
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the bitmask representation of lotto rows.
+ */
+public class DrawMaskTest {
+    @Test
+    public void numbers_roundTrip() {
+        TreeSet<Integer> numbers = new TreeSet<>(Arrays.asList(1, 7, 13, 22, 31, 39, 40));
+        long mask = DrawMask.fromNumbers(numbers);
+
+        assertEquals(7, DrawMask.size(mask));
+        assertEquals(numbers, DrawMask.toNumbers(mask));
+    }
+
+    @Test
+    public void matches_countsSameNumbers() {
+        long draw = DrawMask.fromNumbers(Arrays.asList(1, 2, 3, 4, 5, 6, 7));
+        long ticket = DrawMask.fromNumbers(Arrays.asList(5, 6, 7, 8, 9, 10, 11));
+
+        assertEquals(3, DrawMask.matches(draw, ticket));
+        assertTrue(DrawMask.contains(draw, 1));
+        assertFalse(DrawMask.contains(draw, 40));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromNumbers_rejectsOutOfRange() {
+        DrawMask.fromNumbers(Arrays.asList(0, 41));
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the uniformity of the draw sampler.
+ */
+public class DrawSamplerTest {
+    @Test
+    public void draw_picksExactlyKInRange() {
+        DrawSampler sampler = new DrawSampler(40, 7);
+        RandomSource random = new SplitMix64(1);
+        long validBits = ((1L << 41) - 1) & ~1L;
+
+        for (int i = 0; i < 10000; i++) {
+            long draw = sampler.draw(random);
+            assertEquals(7, Long.bitCount(draw));
+            assertEquals(0, draw & ~validBits);
+        }
+    }
+
+    @Test
+    public void draw_everyNumberEquallyLikely() {
+        DrawSampler sampler = new DrawSampler(40, 7);
+        RandomSource random = new Xoshiro256StarStar(2);
+        int draws = 400000;
+        long[] counts = new long[41];
+
+        for (int i = 0; i < draws; i++) {
+            long draw = sampler.draw(random);
+            for (int n = 1; n <= 40; n++) {
+                counts[n] += (draw >>> n) & 1;
+            }
+        }
+
+        // Chi-square with 39 degrees of freedom, 80 is far beyond the 0.01 % tail.
+        double expected = draws * 7 / 40.0;
+        double chiSquare = 0;
+        for (int n = 1; n <= 40; n++) {
+            chiSquare += (counts[n] - expected) * (counts[n] - expected) / expected;
+        }
+        assertTrue("chi-square " + chiSquare, chiSquare < 80);
+    }
+
+    @Test
+    public void draw_everyCombinationEquallyLikely() {
+        // All the C(6,3) = 20 combinations of a small game.
+        DrawSampler sampler = new DrawSampler(6, 3);
+        RandomSource random = new SplitMix64(3);
+        int draws = 200000;
+        long[] counts = new long[1 << 7];
+
+        for (int i = 0; i < draws; i++) {
+            counts[(int) sampler.draw(random)]++;
+        }
+
+        int combinations = 0;
+        for (long count : counts) {
+            if (count > 0) {
+                combinations++;
+                assertEquals(draws / 20.0, count, draws / 20.0 * 0.05);
+            }
+        }
+        assertEquals(20, combinations);
+    }
+
+    @Test
+    public void nextInt_isUnbiased() {
+        RandomSource random = new SplitMix64(4);
+        long[] counts = new long[3];
+        for (int i = 0; i < 300000; i++) {
+            counts[random.nextInt(3)]++;
+        }
+        for (long count : counts) {
+            assertEquals(100000, count, 1500);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the game formats.
+ */
+public class GameFormatTest {
+    @Test
+    public void defaultFormat_drawsLikeTheSampler() {
+        DrawSampler sampler = new DrawSampler(40, 7);
+        RandomSource expected = new SplitMix64(5);
+        RandomSource actual = new SplitMix64(5);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(sampler.draw(expected), GameFormat.DEFAULT.draw(actual));
+        }
+    }
+
+    @Test
+    public void bonusFormat_drawsIntoBothPools() {
+        GameFormat format = GameFormat.EUROJACKPOT;
+        RandomSource random = new Xoshiro256StarStar(6);
+
+        for (int i = 0; i < 10000; i++) {
+            long draw = format.draw(random);
+            assertEquals(5, Long.bitCount(draw & format.getMainMask()));
+            assertEquals(2, Long.bitCount(draw & format.getBonusMask()));
+            assertEquals(0, draw & ~(format.getMainMask() | format.getBonusMask()));
+            assertTrue(format.isValidTicket(draw));
+        }
+        assertEquals(62, format.getHighestNumber());
+        assertEquals(1, format.getNumber(51));
+        assertTrue(format.isBonus(51));
+        assertFalse(format.isBonus(50));
+    }
+
+    @Test
+    public void probabilities_matchTheKnownOdds() {
+        for (GameFormat format : GameFormat.presets()) {
+            double total = 0;
+            for (int m = 0; m <= DrawMask.NUMBERS_DRAWN; m++) {
+                total += format.getTotalMatchProbability(m);
+            }
+            assertEquals(format.getName(), 1, total, 1e-12);
+            assertEquals(format.getName(), 1.0 / format.getCombinations(),
+                format.getWinProbability(format.getPicks()), 1e-18);
+        }
+        assertEquals(18643560, GameFormat.LOTTO.getCombinations());
+        assertEquals(13983816, GameFormat.SIX_OF_49.getCombinations());
+        assertEquals(139838160, GameFormat.EUROJACKPOT.getCombinations());
+        assertEquals(8060598, GameFormat.THUNDERBALL.getCombinations());
+        assertEquals(new WaitingTime(7, 5).getWinProbability(), GameFormat.LOTTO.getWinProbability(5), 1e-15);
+    }
+
+    @Test
+    public void simulatedMatches_followTheTables() {
+        GameFormat format = GameFormat.THUNDERBALL;
+        RandomSource random = new SplitMix64(7);
+        long ticket = format.toMask(Arrays.asList(1, 2, 3, 4, 5, 39 + 14));
+        int weeks = 400000;
+        long[][] counts = new long[6][2];
+
+        for (int i = 0; i < weeks; i++) {
+            long draw = format.draw(random);
+            counts[Long.bitCount(draw & ticket & format.getMainMask())]
+                [Long.bitCount(draw & ticket & format.getBonusMask())]++;
+        }
+
+        for (int main = 0; main <= 2; main++) {
+            for (int bonus = 0; bonus <= 1; bonus++) {
+                double expected = weeks * format.getMatchProbability(main, bonus);
+                assertEquals(expected, counts[main][bonus], 5 * Math.sqrt(expected));
+            }
+        }
+    }
+
+    @Test
+    public void forName_ignoresSpaces() {
+        assertSame(GameFormat.EUROJACKPOT, GameFormat.forName("5/50+2/12"));
+        assertSame(GameFormat.SIX_OF_49, GameFormat.forName("6/49"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsTooManyNumbers() {
+        new GameFormat("5/69 + 1/26", 69, 5, 26, 1);
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the streaming statistics.
+ */
+public class LottoStatisticsTest {
+    @Test
+    public void record_countsNumbersAndPairs() {
+        LottoStatistics statistics = new LottoStatistics(3);
+        long draw = DrawMask.fromNumbers(Arrays.asList(1, 5, 9, 12, 20, 33, 40));
+        statistics.record(draw, 2);
+        statistics.record(draw, 4);
+
+        assertEquals(2, statistics.getWeeks());
+        assertEquals(1, statistics.getMatchCount(2));
+        assertEquals(1, statistics.getMatchCount(4));
+        assertEquals(2, statistics.getNumberFrequency(40));
+        assertEquals(0, statistics.getNumberFrequency(2));
+        assertEquals(2, statistics.getPairCount(40, 1));
+        assertEquals(2, statistics.getPairCount(5, 33));
+        assertEquals(0, statistics.getPairCount(2, 5));
+    }
+
+    @Test
+    public void merge_equalsRecordingEverything() {
+        DrawSampler sampler = new DrawSampler(40, 7);
+        RandomSource random = new SplitMix64(9);
+        long ticket = sampler.draw(random);
+        LottoStatistics whole = new LottoStatistics(3);
+        LottoStatistics first = new LottoStatistics(3);
+        LottoStatistics second = new LottoStatistics(3);
+
+        for (int week = 0; week < 5000; week++) {
+            long draw = sampler.draw(random);
+            int matches = Long.bitCount(draw & ticket);
+            whole.record(draw, matches);
+            (week < 2345 ? first : second).record(draw, matches);
+        }
+        first.merge(second);
+
+        assertArrayEquals(whole.getHistogram(), first.getHistogram());
+        assertEquals(whole.getHits(), first.getHits());
+        assertEquals(whole.getLongestDrought(), first.getLongestDrought());
+        assertEquals(whole.getCurrentDrought(), first.getCurrentDrought());
+        assertEquals(whole.getPairCount(3, 17), first.getPairCount(3, 17));
+    }
+
+    @Test
+    public void longestDrought_spansWeeksWithoutHits() {
+        LottoStatistics statistics = new LottoStatistics(5);
+        int[] matches = {5, 0, 1, 2, 6, 0, 7, 1};
+        for (int m : matches) {
+            statistics.record(0L, m);
+        }
+        assertEquals(3, statistics.getLongestDrought());
+        assertEquals(1, statistics.getCurrentDrought());
+        assertEquals(3, statistics.getHits());
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the Monte Carlo experiment and its streaming estimators.
+ */
+public class MonteCarloExperimentTest {
+    private static final long TICKET = DrawMask.fromNumbers(Arrays.asList(1, 2, 3, 4, 5, 6, 7));
+
+    @Test
+    public void runningStatistics_matchTwoPassesAndMerge() {
+        double[] values = {1e9 + 4, 1e9 + 7, 1e9 + 13, 1e9 + 16};
+        RunningStatistics all = new RunningStatistics();
+        RunningStatistics first = new RunningStatistics();
+        RunningStatistics second = new RunningStatistics();
+        for (int i = 0; i < values.length; i++) {
+            all.add(values[i]);
+            (i < 2 ? first : second).add(values[i]);
+        }
+        first.merge(second);
+
+        assertEquals(1e9 + 10, all.getMean(), 1e-6);
+        assertEquals(30, all.getVariance(), 1e-6);
+        assertEquals(all.getMean(), first.getMean(), 1e-6);
+        assertEquals(all.getVariance(), first.getVariance(), 1e-6);
+        assertEquals(1e9 + 16, first.getMax(), 0);
+    }
+
+    @Test
+    public void p2Quantile_tracksAUniformStream() {
+        SplitMix64 random = new SplitMix64(3);
+        P2Quantile median = new P2Quantile(0.5);
+        P2Quantile p99 = new P2Quantile(0.99);
+        for (int i = 0; i < 100000; i++) {
+            double value = random.nextDouble();
+            median.add(value);
+            p99.add(value);
+        }
+
+        assertEquals(0.5, median.get(), 0.01);
+        assertEquals(0.99, p99.get(), 0.005);
+    }
+
+    @Test
+    public void p2Quantile_isExactForFewValues() {
+        P2Quantile median = new P2Quantile(0.5);
+        median.add(9);
+        median.add(1);
+        median.add(5);
+
+        assertEquals(5, median.get(), 0);
+    }
+
+    @Test
+    public void sampledExperiment_stopsAtTheRequestedWidth() throws InterruptedException {
+        double expectedYears = 1 / new WaitingTime(7, 4).getWinProbability() / MonteCarloExperiment.WEEKS_PER_YEAR;
+        MonteCarloExperiment experiment = new MonteCarloExperiment(TICKET, 4, GameFormat.DEFAULT, 17, 1,
+            Long.MAX_VALUE, 0.05, true);
+        experiment.start();
+        MonteCarloExperiment.Estimate estimate = experiment.awaitResult(10, TimeUnit.SECONDS);
+
+        assertNotNull(estimate);
+        assertTrue(estimate.isFinished());
+        assertTrue(estimate.getWidth() <= 0.05);
+        assertEquals(expectedYears, estimate.getMean(), estimate.getWidth());
+        assertTrue(estimate.getMedian() < estimate.getMean());
+        assertTrue(estimate.getP90() < estimate.getP99());
+    }
+
+    @Test
+    public void playedExperiment_runsEveryTrialWithoutATarget() throws InterruptedException {
+        MonteCarloExperiment experiment = new MonteCarloExperiment(TICKET, 3, GameFormat.DEFAULT, 5, 4,
+            200, 0, false);
+        experiment.start();
+        MonteCarloExperiment.Estimate estimate = experiment.awaitResult(10, TimeUnit.SECONDS);
+
+        assertNotNull(estimate);
+        assertEquals(200, estimate.getTrials());
+        assertTrue(estimate.getMin() >= 1 / MonteCarloExperiment.WEEKS_PER_YEAR);
+    }
+}
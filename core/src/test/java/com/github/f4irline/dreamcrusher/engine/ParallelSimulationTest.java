@@ -0,0 +1,73 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the multi-core simulation.
+ */
+public class ParallelSimulationTest {
+    private static final long TICKET = DrawMask.fromNumbers(Arrays.asList(3, 8, 15, 16, 23, 34, 40));
+
+    @Test
+    public void seedStream_matchesSplit() {
+        SplitMix64 root = new SplitMix64(42);
+        SplitMix64 stream = new SplitMix64(0);
+        for (int i = 0; i < 5; i++) {
+            SplitMix64 split = root.split();
+            stream.seedStream(42, i);
+            assertEquals(split.nextLong(), stream.nextLong());
+            assertEquals(split.nextLong(), stream.nextLong());
+        }
+    }
+
+    @Test
+    public void result_isSameForAnyWorkerCount() throws InterruptedException {
+        ParallelSimulation.Result single = runToEnd(1);
+        ParallelSimulation.Result many = runToEnd(4);
+
+        assertTrue(single.getFirstWinningWeek() >= 0);
+        assertEquals(single.getFirstWinningWeek(), many.getFirstWinningWeek());
+        assertEquals(single.getWinningDraw(), many.getWinningDraw());
+        assertEquals(single.getFirstWinningWeek() + 1, many.getTotalWeeks());
+        assertArrayEquals(single.getHistogram(), many.getHistogram());
+    }
+
+    @Test
+    public void histogram_coversEveryWeekWithinBudget() throws InterruptedException {
+        ParallelSimulation simulation = new ParallelSimulation(TICKET, 8, 7, 3, 100000);
+        simulation.start();
+        ParallelSimulation.Result result = simulation.awaitResult(1, TimeUnit.MINUTES);
+
+        long weeks = 0;
+        for (long count : result.getHistogram()) {
+            weeks += count;
+        }
+        assertEquals(-1, result.getFirstWinningWeek());
+        assertEquals(100000, result.getTotalWeeks());
+        assertEquals(100000, weeks);
+    }
+
+    @Test
+    public void fullBudget_keepsRunningAfterTheFirstWin() throws InterruptedException {
+        ParallelSimulation.Result first = runToEnd(2);
+        ParallelSimulation simulation = new ParallelSimulation(TICKET, 5, 1234, 3, 200000, false);
+        simulation.start();
+        ParallelSimulation.Result result = simulation.awaitResult(1, TimeUnit.MINUTES);
+
+        assertEquals(200000, result.getTotalWeeks());
+        assertEquals(first.getFirstWinningWeek(), result.getFirstWinningWeek());
+        assertEquals(first.getWinningDraw(), result.getWinningDraw());
+        assertTrue(result.getStatistics().getHits() > 1);
+    }
+
+    private static ParallelSimulation.Result runToEnd(int workers) throws InterruptedException {
+        ParallelSimulation simulation = new ParallelSimulation(TICKET, 5, 1234, workers, Long.MAX_VALUE);
+        simulation.start();
+        return simulation.awaitResult(1, TimeUnit.MINUTES);
+    }
+}
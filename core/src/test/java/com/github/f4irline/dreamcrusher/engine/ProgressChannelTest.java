@@ -0,0 +1,108 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the progress channel and its listeners.
+ */
+public class ProgressChannelTest {
+
+    /**
+     * Runs the tasks only when asked to, like a busy UI thread.
+     */
+    private static class QueueExecutor implements Executor {
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.poll().run();
+            }
+        }
+    }
+
+    private static class RecordingListener implements ProgressListener {
+        int progressCalls;
+        long weeks;
+        long sevens;
+        int victories;
+        long winningRows;
+
+        @Override
+        public void onProgress(ProgressChannel.Snapshot progress) {
+            progressCalls++;
+            weeks = progress.getWeeks();
+            sevens = progress.getMatchCount(7);
+        }
+
+        @Override
+        public void onVictory(int requiredMatches, long winningRows) {
+            victories++;
+            this.winningRows = winningRows;
+        }
+    }
+
+    @Test
+    public void slowListener_onlySeesTheLatestProgress() {
+        ProgressChannel channel = new ProgressChannel();
+        QueueExecutor executor = new QueueExecutor();
+        RecordingListener listener = new RecordingListener();
+        channel.addListener(listener, executor);
+        executor.runAll();
+
+        LottoStatistics statistics = new LottoStatistics(7);
+        statistics.record(0xFEL, 7);
+        for (long week = 1; week <= 1000; week++) {
+            channel.publish(0xFEL, week, 7, 7, 0, 0, 0, -1, statistics);
+        }
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+
+        assertEquals(1, listener.progressCalls);
+        assertEquals(1000, listener.weeks);
+        assertEquals(1, listener.sevens);
+    }
+
+    @Test
+    public void victory_comesAfterTheProgress() {
+        ProgressChannel channel = new ProgressChannel();
+        QueueExecutor executor = new QueueExecutor();
+        RecordingListener listener = new RecordingListener();
+        channel.addListener(listener, executor);
+        executor.runAll();
+
+        channel.publish(0xFEL, 5, 7, 7, 0, 0, 0, -1, null);
+        channel.publishVictory(7, 8);
+        executor.runAll();
+
+        assertEquals(1, listener.progressCalls);
+        assertEquals(5, listener.weeks);
+        assertEquals(1, listener.victories);
+        assertEquals(8, listener.winningRows);
+    }
+
+    @Test
+    public void removedListener_skipsThePendingCall() {
+        ProgressChannel channel = new ProgressChannel();
+        QueueExecutor executor = new QueueExecutor();
+        RecordingListener listener = new RecordingListener();
+        channel.addListener(listener, executor);
+        executor.runAll();
+
+        channel.publish(0L, 1, 0, 0, 0, 0, 0, -1, null);
+        channel.removeListener(listener);
+        channel.publish(0L, 2, 0, 0, 0, 0, 0, -1, null);
+        executor.runAll();
+
+        assertEquals(0, listener.progressCalls);
+    }
+}
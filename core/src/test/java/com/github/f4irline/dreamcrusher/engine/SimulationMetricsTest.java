@@ -0,0 +1,97 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the simulation metrics and their histograms.
+ */
+public class SimulationMetricsTest {
+    @Test
+    public void histogram_bucketsByPowersOfTwo() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(1000);
+        histogram.record(1023);
+        histogram.record(1024);
+
+        assertEquals(5, histogram.getCount());
+        assertEquals(1, histogram.getBucketCount(0));
+        assertEquals(1, histogram.getBucketCount(1));
+        assertEquals(2, histogram.getBucketCount(10));
+        assertEquals(1, histogram.getBucketCount(11));
+        assertEquals(1024, histogram.getQuantileNanos(0.8));
+        assertEquals(2048, histogram.getMaxNanos());
+        assertEquals(3048 / 5.0, histogram.getMeanNanos(), 1e-9);
+    }
+
+    @Test
+    public void speed_averagesTowardsTheLatest() {
+        SimulationMetrics metrics = new SimulationMetrics(SimulationMetrics.NO_ALLOCATIONS);
+        metrics.recordSpeed(1000, 1000000000L);
+        assertEquals(1000, metrics.getAverageWeeksPerSecond(), 1e-9);
+
+        // One second at 2000 weeks/s closes 1 - e^(-1/5) of the gap.
+        metrics.recordSpeed(2000, 1000000000L);
+        assertEquals(2000, metrics.getWeeksPerSecond(), 1e-9);
+        assertEquals(1000 + 1000 * (1 - Math.exp(-0.2)), metrics.getAverageWeeksPerSecond(), 1e-9);
+
+        for (int i = 0; i < 400; i++) {
+            metrics.recordSpeed(500, 250000000L);
+        }
+        assertEquals(2000, metrics.getAverageWeeksPerSecond(), 0.01);
+        assertEquals(-1, metrics.getAllocatedBytesPerWeek(), 0);
+    }
+
+    @Test
+    public void allocations_areSpreadOverTheWeeks() {
+        final long[] allocated = {0};
+        SimulationMetrics metrics = new SimulationMetrics(new SimulationMetrics.AllocationProbe() {
+            @Override
+            public long getAllocatedBytes() {
+                return allocated[0];
+            }
+        });
+        metrics.recordSpeed(100, 1000);
+        allocated[0] = 800;
+        metrics.recordSpeed(100, 1000);
+
+        assertEquals(8, metrics.getAllocatedBytesPerWeek(), 1e-9);
+    }
+
+    @Test
+    public void snapshot_isNotTouchedByLaterRecording() {
+        SimulationMetrics metrics = new SimulationMetrics(SimulationMetrics.NO_ALLOCATIONS);
+        metrics.recordDraw(100);
+        SimulationMetrics snapshot = metrics.snapshot();
+        metrics.recordDraw(100);
+
+        assertEquals(1, snapshot.getDraw().getCount());
+        StringWriter text = new StringWriter();
+        snapshot.dump(new PrintWriter(text));
+        assertTrue(text.toString(), text.toString().contains("draw: n=1 mean=100ns"));
+    }
+
+    @Test
+    public void blocks_areKeptApartFromTheWeeks() {
+        SimulationMetrics metrics = new SimulationMetrics(SimulationMetrics.NO_ALLOCATIONS);
+        metrics.recordDraw(100);
+        metrics.recordBlock(40000, 20000, 1024);
+        metrics.recordBlock(40000, 20000, 512);
+        SimulationMetrics snapshot = metrics.snapshot();
+
+        assertEquals(1, snapshot.getDraw().getCount());
+        assertEquals(0, snapshot.getMatch().getCount());
+        assertEquals(2, snapshot.getBlockDraw().getCount());
+        assertEquals(1536, snapshot.getBlockWeeks());
+        StringWriter text = new StringWriter();
+        snapshot.dump(new PrintWriter(text));
+        assertTrue(text.toString(), text.toString().contains("blocks: n=2 mean weeks=768"));
+        assertTrue(text.toString(), text.toString().contains("block match: n=2"));
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the system entries.
+ */
+public class SystemTicketTest {
+    @Test
+    public void rowCounts_matchEnumeratingEveryRow() {
+        long system = DrawMask.fromNumbers(Arrays.asList(2, 5, 9, 11, 17, 20, 24, 28, 31, 33, 37, 40));
+        SystemTicket ticket = new SystemTicket(system);
+        assertEquals(792, ticket.getRows());
+
+        DrawSampler sampler = new DrawSampler(40, 7);
+        RandomSource random = new SplitMix64(17);
+        for (int week = 0; week < 200; week++) {
+            long draw = sampler.draw(random);
+            long[] enumerated = new long[8];
+            // Every 7 number row is the system without 5 of its numbers.
+            for (long row = system; row != 0; row = (row - 1) & system) {
+                if (Long.bitCount(row) == 7) {
+                    enumerated[DrawMask.matches(draw, row)]++;
+                }
+            }
+            int systemMatches = DrawMask.matches(draw, system);
+            for (int j = 0; j <= 7; j++) {
+                assertEquals(enumerated[j], ticket.getRowCount(systemMatches, j));
+            }
+        }
+    }
+
+    @Test
+    public void rowHistogram_weighsEveryWeek() {
+        SystemTicket ticket = new SystemTicket(DrawMask.fromNumbers(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8)));
+        long[] weeks = new long[8];
+        weeks[7] = 1;
+        weeks[0] = 2;
+
+        long[] rows = ticket.getRowHistogram(weeks);
+
+        assertEquals(1, rows[7]);
+        assertEquals(7, rows[6]);
+        assertEquals(2 * 8, rows[0]);
+        assertEquals(1, ticket.getWinningRows(7, 7));
+        assertEquals(8, ticket.getWinningRows(7, 6));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooManyNumbers_isRejected() {
+        new SystemTicket((1L << 14) - 2);
+    }
+}
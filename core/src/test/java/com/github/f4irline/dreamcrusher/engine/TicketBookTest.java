@@ -0,0 +1,61 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests checking the bit-sliced matching against plain bit counts.
+ */
+public class TicketBookTest {
+    @Test
+    public void match_agreesWithBitCount() {
+        DrawSampler sampler = new DrawSampler(40, 7);
+        RandomSource random = new SplitMix64(8);
+        long[] tickets = new long[1000];
+        for (int t = 0; t < tickets.length; t++) {
+            tickets[t] = sampler.draw(random);
+        }
+        TicketBook book = new TicketBook(tickets, 4);
+
+        int[] best = new int[tickets.length];
+        long[] firstWins = new long[tickets.length];
+        java.util.Arrays.fill(firstWins, -1);
+        for (int week = 0; week < 2000; week++) {
+            long draw = sampler.draw(random);
+            book.match(draw, week);
+            int weekBest = 0;
+            for (int t = 0; t < tickets.length; t++) {
+                int matches = Long.bitCount(draw & tickets[t]);
+                weekBest = Math.max(weekBest, matches);
+                best[t] = Math.max(best[t], matches);
+                if (matches >= 4 && firstWins[t] < 0) {
+                    firstWins[t] = week;
+                }
+            }
+            assertEquals(weekBest, book.getWeekBestMatch());
+        }
+
+        int winners = 0;
+        for (int t = 0; t < tickets.length; t++) {
+            assertEquals(best[t], book.getBestMatch(t));
+            assertEquals(firstWins[t], book.getFirstWinningWeek(t));
+            if (firstWins[t] >= 0) {
+                winners++;
+            }
+        }
+        assertEquals(winners, book.getWinnerCount());
+    }
+
+    @Test
+    public void match_countsAllSevenNumbers() {
+        long ticket = DrawMask.fromNumbers(java.util.Arrays.asList(1, 2, 3, 4, 5, 6, 7));
+        TicketBook book = new TicketBook(new long[] {ticket, 0L}, 7);
+
+        assertEquals(1, book.match(ticket, 3));
+        assertEquals(7, book.getBestMatch(0));
+        assertEquals(0, book.getBestMatch(1));
+        assertEquals(3, book.getFirstWinningWeek(0));
+        assertFalse(book.allWon());
+    }
+}
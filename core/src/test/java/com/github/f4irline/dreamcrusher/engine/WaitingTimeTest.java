@@ -0,0 +1,71 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests comparing the sampled waiting time to the brute force simulation.
+ */
+public class WaitingTimeTest {
+    private static final long TICKET = DrawMask.fromNumbers(Arrays.asList(2, 9, 14, 21, 27, 33, 38));
+
+    @Test
+    public void jackpotProbability_isOneCombination() {
+        WaitingTime waitingTime = new WaitingTime(7, 7);
+        assertEquals(1.0 / 18643560, waitingTime.getWinProbability(), 1e-15);
+    }
+
+    @Test
+    public void matchProbabilities_sumToOne() {
+        WaitingTime waitingTime = new WaitingTime(7, 1);
+        double sum = 0;
+        for (int m = 0; m <= 7; m++) {
+            sum += waitingTime.getMatchProbability(m);
+        }
+        assertEquals(1.0, sum, 1e-12);
+    }
+
+    @Test
+    public void sampledWeeks_haveGeometricMean() {
+        WaitingTime waitingTime = new WaitingTime(7, 4);
+        RandomSource random = new SplitMix64(5);
+        double p = waitingTime.getWinProbability();
+        int samples = 200000;
+
+        double sum = 0;
+        for (int i = 0; i < samples; i++) {
+            sum += waitingTime.sampleWinningWeek(random);
+        }
+        double expected = (1 - p) / p;
+        assertEquals(expected, sum / samples, expected * 0.02);
+    }
+
+    @Test
+    public void winningDraws_matchBruteForce() {
+        WaitingTime waitingTime = new WaitingTime(7, 3);
+        RandomSource random = new SplitMix64(6);
+        DrawSampler sampler = new DrawSampler(40, 7);
+        int samples = 100000;
+        long[] sampled = new long[8];
+        long[] bruteForce = new long[8];
+
+        for (int i = 0; i < samples; i++) {
+            long draw = waitingTime.sampleWinningDraw(random, TICKET);
+            assertEquals(7, Long.bitCount(draw));
+            sampled[Long.bitCount(draw & TICKET)]++;
+        }
+        for (int found = 0; found < samples; ) {
+            int matches = Long.bitCount(sampler.draw(random) & TICKET);
+            if (matches >= 3) {
+                bruteForce[matches]++;
+                found++;
+            }
+        }
+        for (int m = 3; m <= 5; m++) {
+            assertEquals(bruteForce[m], sampled[m], samples * 0.01);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.f4irline.dreamcrusher.engine;
+
+import com.github.f4irline.dreamcrusher.LottoLogic;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the ring buffers and the pipeline of the weeks.
+ */
+public class WeekPipelineTest {
+    private static final long TICKET = DrawMask.fromNumbers(Arrays.asList(1, 2, 3, 4, 5, 6, 7));
+
+    @Test
+    public void ringBuffer_pushesBackWhenFull() {
+        LongRingBuffer ring = new LongRingBuffer(4);
+        assertTrue(ring.offer(1));
+        assertTrue(ring.offer(2, 3));
+        assertFalse(ring.offer(4, 5));
+        assertTrue(ring.offer(4));
+        assertFalse(ring.offer(5));
+        assertEquals(4, ring.size());
+        assertEquals(2, ring.getFullOffers());
+
+        long[] values = new long[8];
+        assertEquals(3, ring.drainTo(values, 3));
+        assertTrue(ring.offer(5, 6));
+        assertEquals(3, ring.drainTo(values, 8));
+        assertArrayEquals(new long[] {4, 5, 6}, Arrays.copyOf(values, 3));
+        assertEquals(0, ring.drainTo(values, 8));
+        assertEquals(1, ring.getEmptyPolls());
+        assertEquals(6, ring.getConsumed());
+    }
+
+    @Test
+    public void pipeline_matchesTheSameWeeksAsOneThread() {
+        LottoLogic serial = new LottoLogic(new SplitMix64(42));
+        WeekPipeline pipeline = new WeekPipeline(new LottoLogic(new SplitMix64(42)),
+            WeekPipeline.singleTicket(TICKET, 5), 0, 64);
+        pipeline.start();
+
+        long[] weeks = new long[2 * WeekPipeline.BATCH_WEEKS];
+        long published = 0;
+        boolean won = false;
+        int misses = 0;
+        while (!won) {
+            int count = pipeline.poll(weeks, WeekPipeline.BATCH_WEEKS);
+            if (count == 0) {
+                assertFalse(pipeline.isDone());
+                WeekPipeline.backOff(misses++);
+                continue;
+            }
+            misses = 0;
+            for (int i = 0; i < count; i++) {
+                long draw = serial.draw();
+                int sameNumbers = serial.countMatches(TICKET);
+                assertEquals(draw, weeks[2 * i]);
+                assertEquals(sameNumbers, WeekPipeline.getSameNumbers(weeks[2 * i + 1]));
+                won = WeekPipeline.hasWon(weeks[2 * i + 1]);
+                assertEquals(sameNumbers >= 5, won);
+                published++;
+            }
+        }
+        pipeline.stop();
+
+        assertTrue(pipeline.isDone());
+        assertEquals(published, pipeline.getMatchedWeeks());
+        assertEquals(published, pipeline.getPublishedWeeks());
+        assertTrue(pipeline.getGeneratedWeeks() >= published);
+    }
+}